@@ -0,0 +1,58 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * Common aggregates for {@link Column#with(java.util.function.Function, Collector)}. Any other {@link Collector} that reduces the
+ * objects to a {@link String} may be used as a custom aggregate.
+ */
+@NullMarked
+public class Aggregates {
+
+    private Aggregates() {}
+
+    /** Number of objects in the table */
+    public static <T extends @Nullable Object> Collector<T, ?, @Nullable String> count() {
+        return Collectors.collectingAndThen(Collectors.counting(), String::valueOf);
+    }
+
+    /** Sum of the given integer property of all the objects in the table */
+    public static <T extends @Nullable Object> Collector<T, ?, @Nullable String> sum(ToLongFunction<? super T> mapper) {
+        return Collectors.collectingAndThen(Collectors.summingLong(mapper), String::valueOf);
+    }
+
+    /** Sum of the given decimal property of all the objects in the table, formatted with the given formatter */
+    public static <T extends @Nullable Object> Collector<T, ?, @Nullable String> sum(ToDoubleFunction<? super T> mapper, DoubleFunction<String> formatter) {
+        return Collectors.collectingAndThen(Collectors.summingDouble(mapper), formatter::apply);
+    }
+
+    /** Smallest value of the given property, formatted with the given formatter. Empty if the table has no rows. */
+    public static <T extends @Nullable Object> Collector<T, ?, @Nullable String> min(ToDoubleFunction<? super T> mapper, DoubleFunction<String> formatter) {
+        return summarizing(mapper, stats -> formatter.apply(stats.getMin()));
+    }
+
+    /** Largest value of the given property, formatted with the given formatter. Empty if the table has no rows. */
+    public static <T extends @Nullable Object> Collector<T, ?, @Nullable String> max(ToDoubleFunction<? super T> mapper, DoubleFunction<String> formatter) {
+        return summarizing(mapper, stats -> formatter.apply(stats.getMax()));
+    }
+
+    /** Average value of the given property, formatted with the given formatter. Empty if the table has no rows. */
+    public static <T extends @Nullable Object> Collector<T, ?, @Nullable String> average(ToDoubleFunction<? super T> mapper, DoubleFunction<String> formatter) {
+        return summarizing(mapper, stats -> formatter.apply(stats.getAverage()));
+    }
+
+    private static <T extends @Nullable Object> Collector<T, ?, @Nullable String> summarizing(
+            ToDoubleFunction<? super T> mapper, Function<DoubleSummaryStatistics, String> finisher) {
+        return Collectors.collectingAndThen(Collectors.summarizingDouble(mapper),
+                stats -> stats.getCount() == 0 ? null : finisher.apply(stats));
+    }
+}
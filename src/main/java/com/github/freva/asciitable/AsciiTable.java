@@ -3,20 +3,15 @@ package com.github.freva.asciitable;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.CharBuffer;
 import java.util.*;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 @NullMarked
 public class AsciiTable {
-    private static final int PADDING = 1;
+    static final int PADDING = 1;
     private static final char ELLIPSIS = '…';
 
     /**
@@ -151,63 +146,8 @@ public class AsciiTable {
             '+', '+', '|', '|', '|', '+', '-', '+', '+', '+', '-', '+', '+', '|', '|', '|', '+', '-', '+', '+'};
 
 
-    static void writeTable(OutputStreamWriter osw, String lineSeparator, @Nullable Character[] border, Column[] rawColumns, @Nullable Object[][] data, @Nullable Styler styler, @Nullable Integer maxTableWidth) throws IOException {
-        if (border.length != NO_BORDERS.length)
-            throw new IllegalArgumentException("Border characters array must be exactly " + NO_BORDERS.length + " elements long");
-
-        @Nullable String[][] stringData = objectArrayToString(rawColumns, data);
-        int numColumns = getNumColumns(rawColumns, data);
-        Column[] columns = IntStream.range(0, numColumns)
-                .mapToObj(index -> index < rawColumns.length ? rawColumns[index] : new Column())
-                .filter(Column::isVisible)
-                .toArray(Column[]::new);
-
-        writeTable(osw, lineSeparator, border, columns, stringData, styler, maxTableWidth);
-    }
-
-    private static void writeTable(OutputStreamWriter osw, String lineSeparator, @Nullable Character[] border, Column[] columns, @Nullable String[][] data, @Nullable Styler styler, @Nullable Integer maxTableWidth) throws IOException {
-        int[] colWidths = getColWidths(columns, data, border, maxTableWidth);
-        OverflowBehaviour[] overflows = Arrays.stream(columns).map(Column::getOverflowBehaviour).toArray(OverflowBehaviour[]::new);
-        boolean insertNewline = writeLine(osw, colWidths, border[0], border[1], border[2], border[3]);
-
-        if (Arrays.stream(columns).map(Column::getHeader).anyMatch(Objects::nonNull)) {
-            HorizontalAlign[] aligns = Arrays.stream(columns).map(Column::getHeaderAlign).toArray(HorizontalAlign[]::new);
-            @Nullable String[] header = Arrays.stream(columns).map(Column::getHeader).toArray(String[]::new);
-            if (insertNewline) osw.write(lineSeparator);
-            writeData(osw, colWidths, overflows, aligns, header, border[4], border[5], border[6], lineSeparator,
-                    styler == null ? null : (col, rows) -> styler.styleHeader(columns[col], col, rows));
-            osw.write(lineSeparator);
-            insertNewline = writeLine(osw, colWidths, border[7], border[8], border[9], border[10]);
-        }
-
-        HorizontalAlign[] dataAligns = Arrays.stream(columns).map(Column::getDataAlign).toArray(HorizontalAlign[]::new);
-        for (int i = 0; i < data.length; i++) {
-            if (insertNewline) osw.write(lineSeparator);
-            int row = i;
-            writeData(osw, colWidths, overflows, dataAligns, data[i], border[11], border[12], border[13], lineSeparator,
-                    styler == null ? null : (col, rows) -> styler.styleCell(columns[col], row, col, rows));
-            if (i < data.length - 1) {
-                osw.write(lineSeparator);
-                insertNewline = writeLine(osw, colWidths, border[14], border[15], border[16], border[17]);
-            }
-        }
-
-        if (Arrays.stream(columns).map(Column::getFooter).anyMatch(Objects::nonNull)) {
-            osw.write(lineSeparator);
-            HorizontalAlign[] aligns = Arrays.stream(columns).map(Column::getFooterAlign).toArray(HorizontalAlign[]::new);
-            @Nullable String[] footer = Arrays.stream(columns).map(Column::getFooter).toArray(String[]::new);
-            insertNewline = writeLine(osw, colWidths, border[18], border[19], border[20], border[21]);
-            if (insertNewline) osw.write(lineSeparator);
-            writeData(osw, colWidths, overflows, aligns, footer, border[22], border[23], border[24], lineSeparator,
-                    styler == null ? null : (col, rows) -> styler.styleFooter(columns[col], col, rows));
-        }
-
-        if (border[26] != null) osw.write(lineSeparator);
-        writeLine(osw, colWidths, border[25], border[26], border[27], border[28]);
-    }
-
     /** Returns a line/border row in the resulting table */
-    private static boolean writeLine(OutputStreamWriter osw, int[] colWidths, @Nullable Character left, @Nullable Character middle, @Nullable Character columnSeparator, @Nullable Character right) throws IOException {
+    static boolean writeLine(Writer osw, int[] colWidths, @Nullable Character left, @Nullable Character middle, @Nullable Character columnSeparator, @Nullable Character right) throws IOException {
         if (middle == null) return false;
         if (left != null) osw.append(left);
         for (int col = 0; col < colWidths.length; col++) {
@@ -218,60 +158,76 @@ public class AsciiTable {
         return true;
     }
 
+    /** Returns whether every cell of the row is a single line that fits in its column */
+    private static boolean isSingleLine(int[] colWidths, @Nullable CharSequence[] contents) {
+        for (int col = 0; col < colWidths.length; col++) {
+            CharSequence text = col < contents.length ? contents[col] : null;
+            if (!isSingleLine(text != null ? text : "", colWidths[col])) return false;
+        }
+        return true;
+    }
+
+    /** Returns whether the text is a single line that fits in a column of the given width, so it is written as it is */
+    private static boolean isSingleLine(CharSequence text, int colWidth) {
+        return text.length() <= colWidth - 2 * PADDING && LineUtils.isSingleLine(text);
+    }
+
     /**
      * Returns list of rows in resulting table for a given header/data row. A single header/data row may produce
      * multiple rows in the resulting table if:
      *  - Contents of a row exceed maxCharInLine for that row
      *  - Contents of a row we're already multiline
      */
-    @SuppressWarnings("deprecated")
-    private static void writeData(OutputStreamWriter osw, int[] colWidths, OverflowBehaviour[] overflows, HorizontalAlign[] horizontalAligns,
-                                   @Nullable String[] contents, @Nullable Character left, @Nullable Character columnSeparator, @Nullable Character right, String lineSeparator,
-                                  @Nullable BiFunction<Integer, List<String>, List<String>> styler) throws IOException {
-        List<List<String>> linesContents = IntStream.range(0, colWidths.length)
-                .mapToObj(i -> {
-                    String text = i < contents.length ? contents[i]: "";
-                           text = text != null ? text: "";
-                    return LineUtils.lines(text)
-                            .flatMap(paragraph -> {
-                                int limit = colWidths[i] - 2 * PADDING;
-                                if (paragraph.length() <= limit) return Stream.of(paragraph);
-
-                                switch (overflows[i]) {
-                                    case CLIP_LEFT: return Stream.of(paragraph.substring(paragraph.length() - limit));
-                                    case CLIP:
-                                    case CLIP_RIGHT: return Stream.of(paragraph.substring(0, limit));
-                                    case ELLIPSIS_LEFT: return Stream.of(ELLIPSIS + paragraph.substring(paragraph.length() - limit + 1));
-                                    case ELLIPSIS:
-                                    case ELLIPSIS_RIGHT: return Stream.of(paragraph.substring(0, limit - 1) + ELLIPSIS);
-                                    case ELLIPSIS_CENTER:
-                                        int prefixLen = (limit - 1) / 2;
-                                        int suffixLen = limit - 1 - prefixLen;
-                                        return Stream.of(paragraph.substring(0, prefixLen) + ELLIPSIS + paragraph.substring(paragraph.length() - suffixLen));
-                                    default:
-                                    case NEWLINE: return LineUtils.splitTextIntoLinesOfMaxLength(paragraph, limit).stream();
-                                }
-                            })
-                            .collect(Collectors.toList());
-                })
-                .collect(Collectors.toList());
-        int numLines = linesContents.stream()
-                .mapToInt(List::size)
-                .max().orElse(0);
-
-        List<List<String>> justifiedLinesContents = styler == null ? null : IntStream.range(0, colWidths.length)
-                .mapToObj(col -> styler.apply(col, IntStream.range(0, numLines)
-                        .mapToObj(i -> justify(i < linesContents.get(col).size() ? linesContents.get(col).get(i) : "", horizontalAligns[col], colWidths[col], PADDING))
-                        .collect(Collectors.toList())))
-                .collect(Collectors.toList());
+    static void writeData(Writer osw, int[] colWidths, OverflowBehaviour[] overflows, HorizontalAlign[] horizontalAligns,
+                                   @Nullable CharSequence[] contents, @Nullable Character left, @Nullable Character columnSeparator, @Nullable Character right, String lineSeparator,
+                                  @Nullable BiFunction<Integer, List<String>, List<String>> styler, @Nullable CellCache cellCache) throws IOException {
+        if (styler == null && cellCache == null && isSingleLine(colWidths, contents)) {
+            // Most rows only have short cells, which are padded and written as they are, without splitting them into lines
+            if (left != null) osw.append(left);
+            for (int col = 0; col < colWidths.length; col++) {
+                CharSequence text = col < contents.length ? contents[col] : "";
+                writeJustified(osw, text != null ? text : "", horizontalAligns[col], colWidths[col], PADDING);
+                if (columnSeparator != null && col != colWidths.length - 1) osw.write(columnSeparator);
+            }
+            if (right != null) osw.append(right);
+            return;
+        }
+
+        // With the cell cache, the lines are already justified, otherwise they are justified as they are written
+        List<List<? extends CharSequence>> linesContents = new ArrayList<>(colWidths.length);
+        int numLines = 0;
+        for (int col = 0; col < colWidths.length; col++) {
+            CharSequence text = col < contents.length ? contents[col] : "";
+                         text = text != null ? text : "";
+            List<? extends CharSequence> lines = cellCache != null ?
+                    cellCache.getJustifiedLines(text, colWidths[col], horizontalAligns[col], overflows[col]) :
+                    isSingleLine(text, colWidths[col]) ? Collections.singletonList(text) :
+                    splitCell(text, colWidths[col] - 2 * PADDING, overflows[col]);
+            linesContents.add(lines);
+            numLines = Math.max(numLines, lines.size());
+        }
+
+        List<List<String>> justifiedLinesContents = null;
+        if (styler != null) {
+            justifiedLinesContents = new ArrayList<>(colWidths.length);
+            for (int col = 0; col < colWidths.length; col++) {
+                List<? extends CharSequence> lines = linesContents.get(col);
+                List<String> justified = new ArrayList<>(numLines);
+                for (int line = 0; line < numLines; line++) {
+                    if (cellCache != null && line < lines.size()) justified.add(lines.get(line).toString());
+                    else justified.add(justify(line < lines.size() ? lines.get(line) : "", horizontalAligns[col], colWidths[col], PADDING));
+                }
+                justifiedLinesContents.add(styler.apply(col, justified));
+            }
+        }
 
         for (int line = 0; line < numLines; line++) {
             if (left != null) osw.append(left);
             for (int col = 0; col < colWidths.length; col++) {
-                if (justifiedLinesContents == null) {
-                    String item = linesContents.get(col).size() <= line ? "" : linesContents.get(col).get(line);
-                    writeJustified(osw, item, horizontalAligns[col], colWidths[col], PADDING);
-                } else osw.write(justifiedLinesContents.get(col).get(line));
+                if (justifiedLinesContents != null) osw.write(justifiedLinesContents.get(col).get(line));
+                else if (linesContents.get(col).size() <= line) writeRepeated(osw, ' ', colWidths[col]);
+                else if (cellCache != null) osw.append(linesContents.get(col).get(line));
+                else writeJustified(osw, linesContents.get(col).get(line), horizontalAligns[col], colWidths[col], PADDING);
                 if (columnSeparator != null && col != colWidths.length - 1) osw.write(columnSeparator);
             }
             if (right != null) osw.append(right);
@@ -279,43 +235,211 @@ public class AsciiTable {
         }
     }
 
+    /**
+     * Returns the lines of each cell of a header/data/footer row, each line justified to the width of its column.
+     * The cells may have different numbers of lines, missing lines are filled with spaces when written, see
+     * {@link #writeJustifiedCells}.
+     */
+    static List<List<String>> justifyCells(int[] colWidths, OverflowBehaviour[] overflows, HorizontalAlign[] horizontalAligns,
+                                           @Nullable CharSequence[] contents, @Nullable CellCache cellCache) {
+        List<List<String>> cells = new ArrayList<>(colWidths.length);
+        for (int col = 0; col < colWidths.length; col++) {
+            CharSequence text = col < contents.length ? contents[col] : "";
+                         text = text != null ? text : "";
+            if (cellCache != null) {
+                cells.add(cellCache.getJustifiedLines(text, colWidths[col], horizontalAligns[col], overflows[col]));
+                continue;
+            }
+
+            List<CharSequence> lines = splitCell(text, colWidths[col] - 2 * PADDING, overflows[col]);
+            List<String> justified = new ArrayList<>(lines.size());
+            for (CharSequence line : lines)
+                justified.add(justify(line, horizontalAligns[col], colWidths[col], PADDING));
+            cells.add(justified);
+        }
+        return cells;
+    }
+
+    /** Same as {@link #writeData}, but for cells that have already been justified with {@link #justifyCells} */
+    static void writeJustifiedCells(Writer osw, int[] colWidths, List<List<String>> cells, @Nullable Character left,
+                                    @Nullable Character columnSeparator, @Nullable Character right, String lineSeparator,
+                                    @Nullable BiFunction<Integer, List<String>, List<String>> styler) throws IOException {
+        writeJustifiedCells(osw, colWidths, cells, left, columnSeparator, right, lineSeparator, styler, 0, numLines(cells));
+    }
+
+    /** Returns the number of lines written for the given justified cells, which is the number of lines of the tallest cell */
+    static int numLines(List<List<String>> cells) {
+        int numLines = 0;
+        for (List<String> lines : cells) numLines = Math.max(numLines, lines.size());
+        return numLines;
+    }
+
+    /** Same as above, but only writes the lines from fromLine, inclusive, to toLine, exclusive */
+    static void writeJustifiedCells(Writer osw, int[] colWidths, List<List<String>> cells, @Nullable Character left,
+                                    @Nullable Character columnSeparator, @Nullable Character right, String lineSeparator,
+                                    @Nullable BiFunction<Integer, List<String>, List<String>> styler, int fromLine, int toLine) throws IOException {
+        int numLines = numLines(cells);
+
+        if (styler != null) {
+            List<List<String>> styled = new ArrayList<>(cells.size());
+            for (int col = 0; col < cells.size(); col++) {
+                List<String> lines = new ArrayList<>(cells.get(col));
+                while (lines.size() < numLines) lines.add(justify("", HorizontalAlign.LEFT, colWidths[col], PADDING));
+                styled.add(styler.apply(col, lines));
+            }
+            cells = styled;
+        }
+
+        toLine = Math.min(toLine, numLines);
+        for (int line = fromLine; line < toLine; line++) {
+            if (left != null) osw.append(left);
+            for (int col = 0; col < colWidths.length; col++) {
+                List<String> lines = cells.get(col);
+                if (line < lines.size()) osw.write(lines.get(line));
+                else writeRepeated(osw, ' ', colWidths[col]);
+                if (columnSeparator != null && col != colWidths.length - 1) osw.write(columnSeparator);
+            }
+            if (right != null) osw.append(right);
+            if (line < toLine - 1) osw.write(lineSeparator);
+        }
+    }
+
+    /**
+     * Splits the text of a single cell into lines of at most the given length according to the overflow behaviour.
+     * The lines are sub sequences of the text, except for the lines with an ellipsis, which are built from the ranges
+     * of the text they show, so the text is never copied as a whole. A column with no room for content, e.g. with a
+     * max width of 2, shows none of the text.
+     */
+    static List<CharSequence> splitCell(CharSequence text, int limit, OverflowBehaviour overflow) {
+        if (limit <= 0) return Collections.singletonList("");
+        // Plain loops rather than streams, so that the first table rendered by a JVM does not pay for bootstrapping them
+        if (overflow == OverflowBehaviour.NEWLINE) {
+            List<CharSequence> paragraphs = LineUtils.lineList(text);
+            List<CharSequence> lines = new ArrayList<>(paragraphs.size());
+            for (CharSequence paragraph : paragraphs) {
+                if (paragraph.length() <= limit) lines.add(paragraph);
+                else lines.addAll(LineUtils.splitTextIntoLinesOfMaxLength(paragraph, limit));
+            }
+            return lines;
+        }
+
+        // The other overflow behaviours only show the start and/or the end of each line, so only those ranges of the
+        // text are read, the rest of a long line is only scanned for the line break that ends it
+        List<CharSequence> lines = new ArrayList<>(1);
+        LineUtils.LineIterator lineIterator = new LineUtils.LineIterator(text);
+        while (lineIterator.hasNext()) {
+            int start = lineIterator.getPosition();
+            lines.add(truncateLine(text, start, lineIterator.getLineEndPositionAndAdvanceToNextLine(), limit, overflow));
+        }
+        return lines;
+    }
+
+    /** Returns the line from start to end of the given text, truncated to the given length according to the overflow behaviour */
+    private static CharSequence truncateLine(CharSequence text, int start, int end, int limit, OverflowBehaviour overflow) {
+        if (end - start <= limit) return text.subSequence(start, end);
+
+        switch (overflow) {
+            case CLIP_LEFT: return text.subSequence(end - limit, end);
+            case ELLIPSIS_LEFT: return new StringBuilder(limit).append(ELLIPSIS).append(text, end - limit + 1, end).toString();
+            case ELLIPSIS:
+            case ELLIPSIS_RIGHT: return new StringBuilder(limit).append(text, start, start + limit - 1).append(ELLIPSIS).toString();
+            case ELLIPSIS_CENTER:
+                int prefixLen = (limit - 1) / 2;
+                int suffixLen = limit - 1 - prefixLen;
+                return new StringBuilder(limit).append(text, start, start + prefixLen).append(ELLIPSIS).append(text, end - suffixLen, end).toString();
+            default:
+            case CLIP:
+            case CLIP_RIGHT: return text.subSequence(start, start + limit);
+        }
+    }
+
     /** Returns the width of each column in the resulting table */
-    static int[] getColWidths(Column[] columns, @Nullable String[][] data, @Nullable Character[] border, @Nullable Integer maxTableWidth) {
-        int[] result = new int[columns.length];
-        String current;
+    static int[] getColWidths(Column[] columns, @Nullable CharSequence[][] data, @Nullable Character[] border, @Nullable Integer maxTableWidth) {
+        int[] minWidths = new int[columns.length];
+        int[] maxWidths = new int[columns.length];
+        @Nullable String[] header = new String[columns.length];
+        @Nullable String[] footer = new String[columns.length];
+        for (int col = 0; col < columns.length; col++) {
+            minWidths[col] = columns[col].getMinWidth();
+            maxWidths[col] = columns[col].getMaxWidth();
+            header[col] = columns[col].getHeader();
+            footer[col] = columns[col].getFooter();
+        }
+        return getColWidths(minWidths, maxWidths, header, footer, data, getBorderWidth(border, columns.length), maxTableWidth);
+    }
+
+    /** Returns the number of characters taken up by the vertical borders of a row with the given number of columns */
+    static int getBorderWidth(@Nullable Character[] border, int numColumns) {
+        return (border[4] != null ? 1 : 0) + (border[6] != null ? 1 : 0) + (border[5] != null ? numColumns - 1 : 0);
+    }
+
+    static int[] getColWidths(int[] minWidths, int[] maxWidths, @Nullable String[] header, @Nullable String[] footer,
+                                      @Nullable CharSequence[][] data, int borderWidth, @Nullable Integer maxTableWidth) {
+        return fitColWidths(getContentColWidths(minWidths, maxWidths, header, footer, data), minWidths, borderWidth, maxTableWidth);
+    }
+
+    /**
+     * Returns the width of each column needed to fit its contents, within the min and max width of the column. The
+     * cells are only read until a line that is too long for the max width is found, since the rest cannot widen the
+     * column further.
+     */
+    static int[] getContentColWidths(int[] minWidths, int[] maxWidths, @Nullable String[] header, @Nullable String[] footer, @Nullable CharSequence[][] data) {
+        int[] result = new int[minWidths.length];
+        int[] limits = new int[minWidths.length];
+        for (int col = 0; col < limits.length; col++) limits[col] = maxContentLength(maxWidths[col]);
+        CharSequence current;
 
-        for (@Nullable String[] dataRow : data) {
+        for (@Nullable CharSequence[] dataRow : data) {
             for (int col = 0; col < dataRow.length; col++) {
                 current = dataRow[col];
-                if (current == null || current.length() <= result[col]) continue;
-                result[col] = Math.max(result[col], LineUtils.maxLineLength(current));
+                if (current == null || current.length() <= result[col] || result[col] >= limits[col]) continue;
+                result[col] = Math.max(result[col], LineUtils.maxLineLength(current, limits[col]));
             }
         }
+        return getContentColWidths(minWidths, maxWidths, header, footer, result);
+    }
 
-        for (int col = 0; col < columns.length; col++) {
+    /** Returns the length of the longest line that fits in a column of the given max width */
+    static int maxContentLength(int maxWidth) {
+        return Math.max(0, maxWidth - 2 * PADDING);
+    }
+
+    /**
+     * Same as {@link #getContentColWidths(int[], int[], String[], String[], CharSequence[][])}, but with the length of the
+     * longest line in each column of the data already known. The given array is updated in place.
+     */
+    static int[] getContentColWidths(int[] minWidths, int[] maxWidths, @Nullable String[] header, @Nullable String[] footer, int[] result) {
+        String current;
+        for (int col = 0; col < result.length; col++) {
             int length = result[col];
-            current = columns[col].getHeader();
+            current = header[col];
             if (current != null && current.length() > length)
-                length = Math.max(length, LineUtils.maxLineLength(current));
+                length = Math.max(length, LineUtils.maxLineLength(current, maxContentLength(maxWidths[col])));
 
-            current = columns[col].getFooter();
+            current = footer[col];
             if (current != null && current.length() > length)
-                length = Math.max(length, LineUtils.maxLineLength(current));
-            result[col] = Math.max(Math.min(columns[col].getMaxWidth(), length + 2 * PADDING), columns[col].getMinWidth());
+                length = Math.max(length, LineUtils.maxLineLength(current, maxContentLength(maxWidths[col])));
+            result[col] = Math.max(Math.min(maxWidths[col], length + 2 * PADDING), minWidths[col]);
         }
+        return result;
+    }
 
+    /**
+     * Shrinks the given column widths, in place, so that the table including its vertical borders fits within the max
+     * table width. The columns are shrunk in proportion to how much wider they are than their minimum width.
+     */
+    static int[] fitColWidths(int[] result, int[] minWidths, int borderWidth, @Nullable Integer maxTableWidth) {
         if (maxTableWidth == null) return result;
 
-        int[] minWidths = new int[columns.length];
+        int[] lowerBounds = new int[result.length];
         int totalMinWidth = 0;
         int totalCurrentWidth = 0;
         for (int i = 0; i < result.length; i++) {
-            minWidths[i] = Math.max(columns[i].getMinWidth(), 2 * PADDING + Math.min(result[i], 1));
-            totalMinWidth += minWidths[i];
+            lowerBounds[i] = Math.max(minWidths[i], 2 * PADDING + Math.min(result[i], 1));
+            totalMinWidth += lowerBounds[i];
             totalCurrentWidth += result[i];
         }
 
-        int borderWidth = (border[4] != null ? 1 : 0) + (border[6] != null ? 1 : 0) + (border[5] != null ? columns.length - 1 : 0);
         if (totalCurrentWidth + borderWidth <= maxTableWidth)
             return result;
 
@@ -328,10 +452,10 @@ public class AsciiTable {
         double ratio = slackDeficit / (double) totalSlack;
         double[] remainders = new double[result.length];
         for (int i = 0; i < result.length; i++) {
-            double exactShare = (result[i] - minWidths[i]) * ratio;
+            double exactShare = (result[i] - lowerBounds[i]) * ratio;
             int flooredShare = (int) exactShare;
             remainders[i] = exactShare - flooredShare;
-            result[i] = minWidths[i] + flooredShare;
+            result[i] = lowerBounds[i] + flooredShare;
             slackDeficit -= flooredShare;
         }
 
@@ -346,21 +470,81 @@ public class AsciiTable {
         return result;
     }
 
-    /** Returns maximum number of columns between the header or any of the data rows */
-    private static int getNumColumns(@Nullable Column[] columns, @Nullable Object[][] data) {
-        return Arrays.stream(data)
-                .mapToInt(cols -> cols.length)
-                .reduce(columns.length, Math::max);
-    }
-
-    static String justify(String str, HorizontalAlign align, int length, int minPadding) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(length);
-        try (OutputStreamWriter osw = new OutputStreamWriter(baos)) {
-            writeJustified(osw, str, align, length, minPadding);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+    /**
+     * Pads the data cells of the columns with {@link HorizontalAlign#DECIMAL} alignment on the right so that the
+     * decimal points line up when the cells are right aligned. The given data is not modified, the rows that
+     * need padding are copied.
+     */
+    static @Nullable CharSequence[][] alignDecimals(Column[] columns, @Nullable CharSequence[][] data) {
+        @Nullable CharSequence[][] result = data;
+        for (int col = 0; col < columns.length; col++) {
+            if (columns[col].getDataAlign() != HorizontalAlign.DECIMAL) continue;
+
+            int maxFractionLength = 0;
+            for (@Nullable CharSequence[] row : data) {
+                if (col < row.length && row[col] != null)
+                    maxFractionLength = Math.max(maxFractionLength, fractionLength(row[col]));
+            }
+            if (maxFractionLength == 0) continue;
+
+            if (result == data) result = data.clone();
+            for (int row = 0; row < data.length; row++) {
+                CharSequence cell = col < data[row].length ? data[row][col] : null;
+                int fractionLength = cell == null ? -1 : fractionLength(cell);
+                if (fractionLength < 0 || fractionLength == maxFractionLength) continue;
+
+                if (result[row] == data[row]) result[row] = data[row].clone();
+                result[row][col] = padRight(cell, maxFractionLength - fractionLength);
+            }
         }
-        return baos.toString();
+        return result;
+    }
+
+    /** Returns the given cell followed by the given number of spaces */
+    static String padRight(CharSequence cell, int padding) {
+        char[] padded = new char[cell.length() + padding];
+        getChars(cell, padded, 0);
+        Arrays.fill(padded, cell.length(), padded.length, ' ');
+        return new String(padded);
+    }
+
+    /**
+     * Returns the number of chars from the decimal point to the end of the cell, if there is no decimal point,
+     * from the end of the last digit. Returns -1 for multiline cells, which are not aligned.
+     */
+    static int fractionLength(CharSequence cell) {
+        int decimalPoint = -1, lastDigit = -1;
+        for (int i = 0; i < cell.length(); i++) {
+            char c = cell.charAt(i);
+            if (c == '\n' || c == '\r') return -1;
+            if (c == '.') decimalPoint = i;
+            else if (c >= '0' && c <= '9') lastDigit = i;
+        }
+        if (decimalPoint >= 0) return cell.length() - decimalPoint;
+        return lastDigit >= 0 ? cell.length() - lastDigit - 1 : 0;
+    }
+
+    /** Returns maximum number of columns between the header or any of the data rows */
+    static int getNumColumns(@Nullable Column[] columns, @Nullable Object[][] data) {
+        int numColumns = columns.length;
+        for (@Nullable Object[] row : data) numColumns = Math.max(numColumns, row.length);
+        return numColumns;
+    }
+
+    static String justify(CharSequence str, HorizontalAlign align, int length, int minPadding) {
+        if (str.length() >= length) return str.toString();
+
+        char[] justified = new char[length];
+        Arrays.fill(justified, ' ');
+        getChars(str, justified, leftPadding(str, align, length, minPadding));
+        return new String(justified);
+    }
+
+    /** Copies all the chars of the given sequence to the given array, starting at the given index */
+    private static void getChars(CharSequence str, char[] dst, int dstBegin) {
+        if (str instanceof String) ((String) str).getChars(0, str.length(), dst, dstBegin);
+        else if (str instanceof StringBuilder) ((StringBuilder) str).getChars(0, str.length(), dst, dstBegin);
+        else for (int i = 0; i < str.length(); i++) dst[dstBegin + i] = str.charAt(i);
     }
 
     /**
@@ -373,41 +557,53 @@ public class AsciiTable {
      * @param length Total new length
      * @param minPadding Length of padding to apply from both left and right before justifying
      */
-    static void writeJustified(OutputStreamWriter osw, String str, HorizontalAlign align, int length, int minPadding) throws IOException {
+    static void writeJustified(Writer osw, CharSequence str, HorizontalAlign align, int length, int minPadding) throws IOException {
         if (str.length() < length) {
-            int leftPadding = align == HorizontalAlign.LEFT ?   minPadding :
-                              align == HorizontalAlign.CENTER ? (length - str.length()) / 2 :
-                                                                length - str.length() - minPadding;
-
+            int leftPadding = leftPadding(str, align, length, minPadding);
             writeRepeated(osw, ' ', leftPadding);
-            osw.write(str);
+            osw.append(str);
             writeRepeated(osw, ' ', length - str.length() - leftPadding);
-        } else osw.write(str);
+        } else osw.append(str);
     }
 
-    private static void writeRepeated(OutputStreamWriter osw, char c, int num) throws IOException {
+    private static int leftPadding(CharSequence str, HorizontalAlign align, int length, int minPadding) {
+        return align == HorizontalAlign.LEFT ?   minPadding :
+               align == HorizontalAlign.CENTER ? (length - str.length()) / 2 :
+                                                 length - str.length() - minPadding;
+    }
+
+    private static void writeRepeated(Writer osw, char c, int num) throws IOException {
+        if (osw instanceof RenderContext) {
+            ((RenderContext) osw).writeRepeated(c, num);
+            return;
+        }
+
         char[] array = new char[num];
         Arrays.fill(array, c);
         osw.write(array);
     }
 
-    private static @Nullable String[][] objectArrayToString(Column[] columns, @Nullable Object [][] array) {
-        int[] numInvisible = new int[Math.max(1, columns.length)];
-        for (int i = 0; i < columns.length; i++)
-            numInvisible[i] = (i == 0 ? 0 : numInvisible[i - 1]) + (columns[i].isVisible() ? 0 : 1);
-
-        if (numInvisible[numInvisible.length - 1] == 0 && array instanceof String[][])
-            return (String[][]) array;
-
-        @Nullable String[][] stringArray = new String[array.length][];
-        for (int i = 0; i < stringArray.length; i++) {
-            stringArray[i] = new String[array[i].length - numInvisible[Math.min(numInvisible.length, array[i].length) - 1]];
-            for (int j = 0, k = 0; k < stringArray[i].length; j++) {
+    /**
+     * Returns the visible cells of the given rows. Cells that are already char sequences, e.g. strings, string
+     * builders or char buffers, are kept as they are, so that they are measured and written without copying them,
+     * other objects are converted with {@link Object#toString()}.
+     */
+    static @Nullable CharSequence[][] toCells(TableSpec spec, @Nullable Object [][] array) {
+        Column[] columns = spec.rawColumns;
+        int[] numInvisible = spec.numInvisible;
+        if (numInvisible[numInvisible.length - 1] == 0 && array instanceof CharSequence[][])
+            return (CharSequence[][]) array;
+
+        @Nullable CharSequence[][] cells = new CharSequence[array.length][];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new CharSequence[array[i].length == 0 ? 0 : array[i].length - numInvisible[Math.min(numInvisible.length, array[i].length) - 1]];
+            for (int j = 0, k = 0; k < cells[i].length; j++) {
                 if (j < columns.length && !columns[j].isVisible()) continue;
-                stringArray[i][k++] = array[i][j] == null ? null : array[i][j].toString();
+                Object value = array[i][j];
+                cells[i][k++] = value == null ? null : value instanceof CharSequence ? (CharSequence) value : value.toString();
             }
         }
-        return stringArray;
+        return cells;
     }
 
     // ===== Public API =====
@@ -3,15 +3,17 @@ package com.github.freva.asciitable;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
-import java.util.stream.IntStream;
+import java.util.PriorityQueue;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 @NullMarked
 public class AsciiTableBuilder {
@@ -23,7 +25,16 @@ public class AsciiTableBuilder {
     private @Nullable String @Nullable[] footer;
     private Column @Nullable[] columns;
     private @Nullable Object @Nullable[][] data;
+    /** Returns the writer of a table whose rows are read as it is written, e.g. from a file, rather than from data */
+    private @Nullable BiFunction<TableSpec, @Nullable RenderBudget, TableWriter> source;
     private @Nullable Integer maxTableWidth;
+    private @Nullable CellCache cellCache;
+    private @Nullable RowCache rowCache;
+    private long maxRenderNanos = RenderBudget.UNLIMITED;
+    private long maxOutputChars = RenderBudget.UNLIMITED;
+    private long maxOutputBytes = RenderBudget.UNLIMITED;
+    private long maxOutputLines = RenderBudget.UNLIMITED;
+    private @Nullable Consumer<Truncation> truncationListener;
 
     /** Set the line separator to use between table rows. Default is {@link System#lineSeparator()}. */
     public AsciiTableBuilder lineSeparator(String lineSeparator) {
@@ -61,69 +72,255 @@ public class AsciiTableBuilder {
 
     public AsciiTableBuilder data(@Nullable Object[][] data) {
         this.data = data;
+        this.source = null;
         return this;
     }
 
     public AsciiTableBuilder data(Column @Nullable[] columns, @Nullable Object[][] data) {
         this.columns = columns;
         this.data = data;
+        this.source = null;
         return this;
     }
 
+    /**
+     * Set a CSV or TSV file as the data of the table, which is read as the table is rendered rather than loaded
+     * into memory, see {@link DelimitedFile}. Cannot be {@link #layout() laid out} or combined with a row cache.
+     */
+    public AsciiTableBuilder data(DelimitedFile file) {
+        Objects.requireNonNull(file, "file cannot be null");
+        this.source = file::writer;
+        this.data = null;
+        return this;
+    }
+
+    /** Set the columns of a CSV or TSV file, columns without a header get their header from the file if it has one */
+    public AsciiTableBuilder data(Column @Nullable[] columns, DelimitedFile file) {
+        this.columns = columns;
+        return data(file);
+    }
+
+    /**
+     * Set a JDBC result set as the data of the table, whose rows are read as the table is rendered, see
+     * {@link ResultSetData}. Cannot be {@link #layout() laid out} or combined with a row cache.
+     */
+    public AsciiTableBuilder data(ResultSetData resultSet) {
+        Objects.requireNonNull(resultSet, "result set cannot be null");
+        this.source = resultSet::writer;
+        this.data = null;
+        return this;
+    }
+
+    /** Set the columns of a result set, columns without a header get the label of their column as header */
+    public AsciiTableBuilder data(Column @Nullable[] columns, ResultSetData resultSet) {
+        this.columns = columns;
+        return data(resultSet);
+    }
+
     public <T extends @Nullable Object> AsciiTableBuilder data(Collection<T> objects, List<ColumnData<T>> columns) {
+        return data(columns, objects, objects.size());
+    }
+
+    /**
+     * Set the table data to the first {@code limit} objects according to {@code order}. The objects are streamed
+     * through a heap bounded to {@code limit} elements, so only the rows that end up in the table are retained and
+     * converted, the rest of {@code objects} is never copied or fully sorted. Aggregate footers only include the
+     * selected rows.
+     *
+     * @param objects Objects to select the rows from, may be a lazy {@link Iterable}, e.g. {@code stream::iterator}
+     * @param columns Columns to render for each of the selected objects
+     * @param order Order of the rows in the table, use {@link Comparator#thenComparing(Comparator)} to sort by multiple keys
+     * @param limit Max number of rows in the table
+     */
+    public <T extends @Nullable Object> AsciiTableBuilder data(Iterable<T> objects, List<ColumnData<T>> columns, Comparator<? super T> order, int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("Limit must be non-negative, was " + limit);
+
+        // Max-heap of the rows kept so far, the head is the row that is evicted first
+        PriorityQueue<T> heap = new PriorityQueue<>(Math.max(1, Math.min(limit, 1024)), order.reversed());
+        if (limit > 0) {
+            for (T object : objects) {
+                if (heap.size() < limit) heap.add(object);
+                else if (order.compare(object, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(object);
+                }
+            }
+        }
+
+        List<T> sorted = new ArrayList<>(heap);
+        sorted.sort(order);
+        return data(columns, sorted, sorted.size());
+    }
+
+    private <T extends @Nullable Object> AsciiTableBuilder data(List<ColumnData<T>> columns, Iterable<T> objects, int size) {
         Column[] rawColumns = columns.toArray(new Column[0]);
+        @SuppressWarnings("unchecked")
+        ColumnData.Aggregation<T, ?>[] aggregations = (ColumnData.Aggregation<T, ?>[]) new ColumnData.Aggregation<?, ?>[columns.size()];
+        boolean hasAggregations = false;
+        for (int j = 0; j < columns.size(); j++) {
+            aggregations[j] = columns.get(j).newAggregation();
+            hasAggregations |= aggregations[j] != null;
+        }
 
-        @Nullable String[][] data = new String[objects.size()][];
+        @Nullable CharSequence[][] data = new CharSequence[size][];
         int i = 0;
         for (T object: objects) {
-            @Nullable String[] current = new String[columns.size()];
-            for (int j = 0; j < columns.size(); j++)
-                current[j] = columns.get(j).getCellValue(object);
+            @Nullable CharSequence[] current = new CharSequence[columns.size()];
+            for (int j = 0; j < columns.size(); j++) {
+                current[j] = columns.get(j).getCellText(object);
+                if (hasAggregations && aggregations[j] != null) aggregations[j].add(object);
+            }
             data[i++] = current;
         }
 
+        for (int j = 0; j < columns.size(); j++) {
+            if (aggregations[j] != null)
+                rawColumns[j] = new Column(rawColumns[j]).footer(aggregations[j].result());
+        }
+
         return data(rawColumns, data);
     }
 
-
     /** Set the maximum width for the entire table (including borders). */
     public AsciiTableBuilder maxTableWidth(int maxTableWidth) {
         this.maxTableWidth = maxTableWidth;
         return this;
     }
 
+    /**
+     * Set the cache of laid out cells, cells with the same text, width, alignment and overflow behaviour are then
+     * only split and justified once. Useful when the same values are repeated often in the table, e.g. enums or
+     * host names, and the cache may be shared between tables. Default is no cache.
+     */
+    public AsciiTableBuilder cellCache(CellCache cellCache) {
+        this.cellCache = Objects.requireNonNull(cellCache, "cell cache cannot be null");
+        return this;
+    }
+
+    /**
+     * Set the cache of rendered data rows, rows that are unchanged since the previous time this table was rendered
+     * are then copied from the cache rather than laid out again. Useful when the same table is rendered
+     * repeatedly with few changes between renders, e.g. by calling {@link #data(Collection, List)} and
+     * {@link #asString()} on this builder periodically. Default is no cache.
+     */
+    public AsciiTableBuilder rowCache(RowCache rowCache) {
+        this.rowCache = Objects.requireNonNull(rowCache, "row cache cannot be null");
+        return this;
+    }
+
+    /**
+     * Set the maximum time a render may take. The time is checked before each data row is written, once it has
+     * passed, the remaining rows are replaced by a single line that says how many rows were dropped, and the
+     * table is closed with the footer and the bottom border, see {@link #onTruncation(Consumer)}. Once any
+     * budget is set, a render also stops like this if the rendering thread is interrupted. Default is no limit.
+     */
+    public AsciiTableBuilder maxRenderTime(Duration maxRenderTime) {
+        if (maxRenderTime.isNegative())
+            throw new IllegalArgumentException("Max render time must be non-negative, was " + maxRenderTime);
+        this.maxRenderNanos = maxRenderTime.toNanos();
+        return this;
+    }
+
+    /**
+     * Set the maximum number of chars to render, rows that do not fit are dropped as for
+     * {@link #maxRenderTime(Duration)}. The line that replaces the dropped rows, the footer and the bottom border
+     * are not counted. Default is no limit.
+     */
+    public AsciiTableBuilder maxOutputChars(long maxChars) {
+        this.maxOutputChars = requirePositive(maxChars, "Max output chars");
+        return this;
+    }
+
+    /** Same as {@link #maxOutputChars(long)}, but the number of bytes the table takes up when encoded as UTF-8 */
+    public AsciiTableBuilder maxOutputBytes(long maxBytes) {
+        this.maxOutputBytes = requirePositive(maxBytes, "Max output bytes");
+        return this;
+    }
+
+    /** Same as {@link #maxOutputChars(long)}, but the number of lines */
+    public AsciiTableBuilder maxOutputLines(long maxLines) {
+        this.maxOutputLines = requirePositive(maxLines, "Max output lines");
+        return this;
+    }
+
+    /** Set the listener that is called when a render drops rows because a budget was used up. Default is none. */
+    public AsciiTableBuilder onTruncation(Consumer<Truncation> listener) {
+        this.truncationListener = Objects.requireNonNull(listener, "listener cannot be null");
+        return this;
+    }
+
     /** Render the table and return it as String */
     public String asString() {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        writeTo(baos);
-        return baos.toString();
+        TableSpec spec = spec();
+        return RenderContext.asString(writer(spec));
     }
 
     /** Write the table to the give output stream. The output stream must be closed by the caller. */
     public void writeTo(OutputStream os) {
+        TableSpec spec = spec();
+        RenderContext.writeTo(writer(spec), os);
+    }
+
+    /**
+     * Returns a renderer that writes the table into {@link java.nio.ByteBuffer}s a piece at a time, see
+     * {@link ResumableRenderer}. The table is encoded with the given charset.
+     */
+    public ResumableRenderer renderer(Charset charset) {
+        TableSpec spec = spec();
+        return new ResumableRenderer(writer(spec), charset);
+    }
+
+    /**
+     * Lays out the table once, so that it can be written with several different borders, see {@link LaidOutTable}.
+     * The row cache is not used.
+     */
+    public LaidOutTable layout() {
+        TableSpec spec = spec();
+        if (source != null)
+            throw new IllegalArgumentException("Cannot lay out a table that is read as it is written");
+        if (data == null)
+            throw new IllegalArgumentException("Data must be set");
+
+        return spec.layout(data);
+    }
+
+    /**
+     * Returns an immutable snapshot of the columns, border and options of this builder, which can be used to render
+     * tables with different data concurrently. The row cache is not part of the spec.
+     */
+    public TableSpec spec() {
         Column[] columns = this.columns;
         if (columns == null) {
             @Nullable String[] nonNullHeader = header != null ? header : new String[0];
             @Nullable String[] nonNullFooter = footer != null ? footer : new String[0];
 
-            columns = IntStream.range(0, Math.max(nonNullHeader.length, nonNullFooter.length))
-                    .mapToObj(index -> new Column()
-                            .header(index < nonNullHeader.length ? nonNullHeader[index] : null)
-                            .footer(index < nonNullFooter.length ? nonNullFooter[index] : null))
-                    .toArray(Column[]::new);
+            columns = new Column[Math.max(nonNullHeader.length, nonNullFooter.length)];
+            for (int index = 0; index < columns.length; index++) {
+                columns[index] = new Column()
+                        .header(index < nonNullHeader.length ? nonNullHeader[index] : null)
+                        .footer(index < nonNullFooter.length ? nonNullFooter[index] : null);
+            }
         } else if (header != null || footer != null)
             throw new IllegalArgumentException("Cannot set both header/footer and columns");
 
-        if (data == null)
-            throw new IllegalArgumentException("Data must be set");
+        return new TableSpec(columns, border, lineSeparator, styler, maxTableWidth, cellCache);
+    }
 
-        try {
-            OutputStreamWriter osw = new OutputStreamWriter(os);
-            AsciiTable.writeTable(osw, lineSeparator, border, columns, data, styler, maxTableWidth);
-            osw.flush();
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+    private TableWriter writer(TableSpec spec) {
+        // The budget is created first, so that its time limit also covers measuring the columns
+        @Nullable RenderBudget budget = maxRenderNanos == RenderBudget.UNLIMITED && maxOutputChars == RenderBudget.UNLIMITED &&
+                maxOutputBytes == RenderBudget.UNLIMITED && maxOutputLines == RenderBudget.UNLIMITED ? null :
+                new RenderBudget(maxRenderNanos, maxOutputChars, maxOutputBytes, maxOutputLines, lineSeparator, truncationListener);
+        if (source != null) return source.apply(spec, budget);
+        if (data != null) return new TableWriter(spec, data, rowCache).budget(budget);
+        throw new IllegalArgumentException("Data must be set");
+    }
+
+    private static long requirePositive(long value, String name) {
+        if (value <= 0)
+            throw new IllegalArgumentException(name + " must be positive, was " + value);
+        return value;
     }
 
     @Override public String toString() { return asString(); }
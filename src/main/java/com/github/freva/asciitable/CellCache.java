@@ -0,0 +1,122 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded least-recently-used cache of laid out cells. A cell is keyed by its text, column width, alignment and
+ * overflow behaviour, and maps to the lines of the cell after it has been split by the overflow behaviour and
+ * justified to the column width, so writing a cached cell is a plain copy of its lines.
+ * <p>
+ * The cache is thread-safe and may be shared between tables, see {@link AsciiTableBuilder#cellCache(CellCache)}.
+ */
+@NullMarked
+public class CellCache {
+    private final int maxSize;
+    private final Map<Key, List<String>> cache;
+    private long hits = 0;
+    private long misses = 0;
+
+    /** @param maxSize Max number of cells to keep in the cache, the least recently used cell is evicted first */
+    public CellCache(int maxSize) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("Max size must be positive, was " + maxSize);
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Key, List<String>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<String>> eldest) {
+                return size() > CellCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the justified lines of the given cell text, laying out and caching the cell if it is not cached. Only
+     * strings are cached, other char sequences may be mutable, so they are laid out every time.
+     */
+    List<String> getJustifiedLines(CharSequence text, int width, HorizontalAlign align, OverflowBehaviour overflow) {
+        if (!(text instanceof String)) return layOut(text, width, align, overflow);
+
+        Key key = new Key((String) text, width, align, overflow);
+        synchronized (this) {
+            List<String> lines = cache.get(key);
+            if (lines != null) {
+                hits++;
+                return lines;
+            }
+
+            misses++;
+            lines = layOut(text, width, align, overflow);
+            cache.put(key, lines);
+            return lines;
+        }
+    }
+
+    private static List<String> layOut(CharSequence text, int width, HorizontalAlign align, OverflowBehaviour overflow) {
+        List<CharSequence> split = AsciiTable.splitCell(text, width - 2 * AsciiTable.PADDING, overflow);
+        List<String> justified = new ArrayList<>(split.size());
+        for (CharSequence line : split)
+            justified.add(AsciiTable.justify(line, align, width, AsciiTable.PADDING));
+        return Collections.unmodifiableList(justified);
+    }
+
+    /** Number of cells that were found in the cache */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** Number of cells that were not found in the cache and had to be laid out */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Number of cells currently in the cache */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Removes all cells from the cache and resets the hit and miss counts */
+    public synchronized void clear() {
+        cache.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    private static class Key {
+        private final String text;
+        private final int width;
+        private final HorizontalAlign align;
+        private final OverflowBehaviour overflow;
+
+        private Key(String text, int width, HorizontalAlign align, OverflowBehaviour overflow) {
+            this.text = text;
+            this.width = width;
+            this.align = align;
+            this.overflow = overflow;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return width == key.width && text.equals(key.text) && align == key.align && overflow == key.overflow;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, width, align, overflow);
+        }
+    }
+}
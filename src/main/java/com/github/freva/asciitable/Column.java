@@ -3,7 +3,11 @@ package com.github.freva.asciitable;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
 
 @NullMarked
 public class Column {
@@ -40,6 +44,11 @@ public class Column {
         this.visible = visible;
     }
 
+    Column(Column column) {
+        this(column.header, column.footer, column.headerAlign, column.dataAlign, column.footerAlign,
+                column.minWidth, column.maxWidth, column.overflowBehaviour, column.visible);
+    }
+
     public @Nullable String getHeader() {
         return header;
     }
@@ -140,6 +149,59 @@ public class Column {
     }
 
     public <T extends @Nullable Object> ColumnData<T> with(Function<T, @Nullable String> getter) {
-        return new ColumnData<>(this, getter);
+        return new ColumnData<>(this, getter, null);
+    }
+
+    /**
+     * Same as {@link Column#with(Function)}, but the cell values may be any char sequence, e.g. a {@link StringBuilder}
+     * or a {@link java.nio.CharBuffer} over a memory-mapped file. The values are measured and written a char or a line
+     * at a time rather than copied to strings, so they must not change until the table has been rendered.
+     */
+    public <T extends @Nullable Object> ColumnData<T> withText(Function<T, ? extends @Nullable CharSequence> getter) {
+        return new ColumnData<>(this, getter, null);
+    }
+
+    /**
+     * Same as {@link Column#with(Function)}, but the cell values are numbers formatted with the given formatter,
+     * e.g. {@code NumberFormatter.fixed(2).thousandsSeparator(',')}. Null values give empty cells.
+     */
+    public <T extends @Nullable Object> ColumnData<T> withNumber(Function<T, @Nullable Number> getter, NumberFormatter formatter) {
+        return with(object -> {
+            Number value = getter.apply(object);
+            return value == null ? null : formatter.format(value);
+        });
+    }
+
+    /**
+     * Same as {@link Column#with(Function)}, but the cell values are instants formatted with the given formatter,
+     * which should not be shared with other columns to get the most out of its memoization. Null values give empty cells.
+     */
+    public <T extends @Nullable Object> ColumnData<T> withInstant(Function<T, @Nullable Instant> getter, TimestampFormatter formatter) {
+        return with(object -> {
+            Instant value = getter.apply(object);
+            return value == null ? null : formatter.format(value);
+        });
+    }
+
+    /** Same as {@link Column#withInstant(Function, TimestampFormatter)}, but for milliseconds since epoch */
+    public <T extends @Nullable Object> ColumnData<T> withEpochMillis(ToLongFunction<T> getter, TimestampFormatter formatter) {
+        return with(object -> formatter.formatEpochMillis(getter.applyAsLong(object)));
+    }
+
+    /** Same as {@link Column#withInstant(Function, TimestampFormatter)}, but for local date-times */
+    public <T extends @Nullable Object> ColumnData<T> withLocalDateTime(Function<T, @Nullable LocalDateTime> getter, TimestampFormatter formatter) {
+        return with(object -> {
+            LocalDateTime value = getter.apply(object);
+            return value == null ? null : formatter.format(value);
+        });
+    }
+
+    /**
+     * Same as {@link Column#with(Function)}, but the footer of this column is set to the aggregate of all the objects
+     * in the table, see {@link Aggregates} for the common aggregates. The aggregate is accumulated while the cell values
+     * are extracted, so the objects are only iterated once. Takes precedence over {@link Column#footer(String)}.
+     */
+    public <T extends @Nullable Object> ColumnData<T> with(Function<T, @Nullable String> getter, Collector<? super T, ?, @Nullable String> aggregate) {
+        return new ColumnData<>(this, getter, aggregate);
     }
 }
\ No newline at end of file
@@ -3,19 +3,58 @@ package com.github.freva.asciitable;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
+import java.util.function.BiConsumer;
 import java.util.function.Function;
+import java.util.stream.Collector;
 
 @NullMarked
 public class ColumnData<T extends @Nullable Object> extends Column {
-    private final Function<T, @Nullable String> getter;
+    private final Function<T, ? extends @Nullable CharSequence> getter;
+    private final @Nullable Collector<? super T, ?, @Nullable String> aggregate;
 
-    ColumnData(Column column, Function<T, @Nullable String> getter) {
-        super(column.getHeader(), column.getFooter(), column.getHeaderAlign(), column.getDataAlign(), column.getFooterAlign(),
-                column.getMinWidth(), column.getMaxWidth(), column.getOverflowBehaviour(), column.isVisible());
+    ColumnData(Column column, Function<T, ? extends @Nullable CharSequence> getter, @Nullable Collector<? super T, ?, @Nullable String> aggregate) {
+        super(column);
         this.getter = getter;
+        this.aggregate = aggregate;
     }
 
     public @Nullable String getCellValue(T object) {
+        CharSequence value = getter.apply(object);
+        return value == null ? null : value.toString();
+    }
+
+    /** Same as {@link #getCellValue(Object)}, but without converting the value to a string */
+    @Nullable CharSequence getCellText(T object) {
         return getter.apply(object);
     }
-}
\ No newline at end of file
+
+    public @Nullable Collector<? super T, ?, @Nullable String> getAggregate() {
+        return aggregate;
+    }
+
+    /** Returns a new aggregation for this column, or null if this column has no aggregate footer */
+    @Nullable Aggregation<T, ?> newAggregation() {
+        return aggregate == null ? null : new Aggregation<>(aggregate);
+    }
+
+    /** The state of an aggregate footer while the objects are being added to the table */
+    static class Aggregation<T extends @Nullable Object, A> {
+        private final Collector<? super T, A, @Nullable String> collector;
+        private final BiConsumer<A, ? super T> accumulator;
+        private final A container;
+
+        private Aggregation(Collector<? super T, A, @Nullable String> collector) {
+            this.collector = collector;
+            this.accumulator = collector.accumulator();
+            this.container = collector.supplier().get();
+        }
+
+        void add(T object) {
+            accumulator.accept(container, object);
+        }
+
+        @Nullable String result() {
+            return collector.finisher().apply(container);
+        }
+    }
+}
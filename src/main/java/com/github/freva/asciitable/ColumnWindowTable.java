@@ -0,0 +1,115 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.OutputStream;
+
+/**
+ * A table with too many columns to show at once, which is written a window of columns at a time, optionally with a
+ * number of frozen leading columns, e.g. an ID column, that are part of every window. The cells of a column are only
+ * converted to char sequences and measured the first time the column is part of a window, so the cost of writing a window
+ * depends on the number of columns in it, not in the table. The width of a column is the same in every window, the
+ * max table width of the spec is therefore not applied, use {@link #getColumnWidth(int)} to choose a window that fits.
+ * <p>
+ * The column indices are the indices of the visible columns. The {@link Styler} is given the index of the column
+ * within the window. Created with {@link TableSpec#columnWindows(Object[][])}. Instances may be written from any
+ * number of threads.
+ */
+@NullMarked
+public final class ColumnWindowTable {
+    private final TableSpec spec;
+    private final @Nullable Object[][] data;
+    /** Index in the data rows of each visible column */
+    private final int[] dataIndices;
+    /** The cells of each visible column that has been part of a window, indexed by column and then by row */
+    private final @Nullable CharSequence[] @Nullable[] columnCells;
+    private final int[] colWidths;
+
+    ColumnWindowTable(TableSpec spec, @Nullable Object[][] data) {
+        spec = spec.withNumColumns(AsciiTable.getNumColumns(spec.rawColumns, data));
+        this.spec = spec;
+        this.data = data;
+        this.dataIndices = new int[spec.columns.length];
+        for (int i = 0, col = 0; col < dataIndices.length; i++) {
+            if (i < spec.rawColumns.length && !spec.rawColumns[i].isVisible()) continue;
+            dataIndices[col++] = i;
+        }
+        this.columnCells = new CharSequence[dataIndices.length][];
+        this.colWidths = new int[dataIndices.length];
+    }
+
+    /** Returns the number of visible columns in the table */
+    public int getNumColumns() {
+        return dataIndices.length;
+    }
+
+    /** Returns the width of the given visible column, including padding, but excluding borders */
+    public synchronized int getColumnWidth(int column) {
+        checkIndex(column, dataIndices.length);
+        cells(column);
+        return colWidths[column];
+    }
+
+    /**
+     * Returns the table with the first frozenColumns columns followed by the columns from firstColumn, inclusive,
+     * to lastColumn, exclusive
+     */
+    public String window(int frozenColumns, int firstColumn, int lastColumn) {
+        return RenderContext.asString(writer(frozenColumns, firstColumn, lastColumn));
+    }
+
+    /** Same as {@link #window(int, int, int)}, but writes the table to the given output stream, which must be closed by the caller */
+    public void writeWindow(int frozenColumns, int firstColumn, int lastColumn, OutputStream os) {
+        RenderContext.writeTo(writer(frozenColumns, firstColumn, lastColumn), os);
+    }
+
+    private TableWriter writer(int frozenColumns, int firstColumn, int lastColumn) {
+        if (frozenColumns < 0 || frozenColumns > firstColumn || firstColumn > lastColumn || lastColumn > dataIndices.length)
+            throw new IndexOutOfBoundsException("Window of " + frozenColumns + " frozen columns and columns " + firstColumn +
+                    " to " + lastColumn + " is out of bounds for table with " + dataIndices.length + " columns");
+
+        int numColumns = frozenColumns + lastColumn - firstColumn;
+        int[] rawIndices = new int[numColumns];
+        int[] widths = new int[numColumns];
+        @Nullable CharSequence[][] windowData = new CharSequence[data.length][numColumns];
+        synchronized (this) {
+            for (int i = 0; i < numColumns; i++) {
+                int column = i < frozenColumns ? i : firstColumn + i - frozenColumns;
+                @Nullable CharSequence[] cells = cells(column);
+                rawIndices[i] = dataIndices[column];
+                widths[i] = colWidths[column];
+                for (int row = 0; row < data.length; row++) windowData[row][i] = cells[row];
+            }
+        }
+
+        return new TableWriter(spec.selectColumns(rawIndices), windowData, widths, null);
+    }
+
+    /** Returns the cells of the given visible column, converting them to char sequences and measuring them the first time */
+    private @Nullable CharSequence[] cells(int column) {
+        @Nullable CharSequence[] cells = columnCells[column];
+        if (cells != null) return cells;
+
+        int index = dataIndices[column];
+        @Nullable CharSequence[][] rows = new CharSequence[data.length][1];
+        for (int row = 0; row < data.length; row++) {
+            Object value = index < data[row].length ? data[row][index] : null;
+            rows[row][0] = value == null ? null : value instanceof CharSequence ? (CharSequence) value : value.toString();
+        }
+        if (spec.dataAligns[column] == HorizontalAlign.DECIMAL)
+            rows = AsciiTable.alignDecimals(new Column[]{spec.columns[column]}, rows);
+
+        cells = new CharSequence[data.length];
+        for (int row = 0; row < data.length; row++) cells[row] = rows[row][0];
+        colWidths[column] = AsciiTable.getContentColWidths(new int[]{spec.minWidths[column]}, new int[]{spec.maxWidths[column]},
+                new String[]{spec.header[column]}, new String[]{spec.footer[column]}, rows)[0];
+        columnCells[column] = cells;
+        return cells;
+    }
+
+    private static void checkIndex(int column, int numColumns) {
+        if (column < 0 || column >= numColumns)
+            throw new IndexOutOfBoundsException("Column " + column + " is out of bounds for table with " + numColumns + " columns");
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A UTF-8 encoded CSV or TSV file to render as a table, see {@link AsciiTableBuilder#data(DelimitedFile)}. The file
+ * is read twice through a buffer of fixed size, first to measure the columns and then to write the rows, so the
+ * table is never held in memory and files of any size may be rendered with constant heap. Fields that are plain
+ * ASCII are measured and written directly from the buffer without being converted to strings.
+ * <p>
+ * Fields in columns with {@link HorizontalAlign#DECIMAL} alignment are padded, which copies them. The file must not
+ * change while it is rendered. Instances are immutable.
+ */
+@NullMarked
+public final class DelimitedFile {
+    private static final int DEFAULT_BUFFER_BYTES = 1 << 20;
+
+    private final Path path;
+    private final char delimiter;
+    private final boolean quoted;
+    private final boolean header;
+    private final int bufferBytes;
+
+    private DelimitedFile(Path path, char delimiter, boolean quoted, boolean header, int bufferBytes) {
+        if (delimiter == '"' || delimiter == '\n' || delimiter == '\r' || delimiter > 0x7F)
+            throw new IllegalArgumentException("Delimiter must be an ASCII char other than '\"' and line breaks, was '" + delimiter + "'");
+        this.path = path;
+        this.delimiter = delimiter;
+        this.quoted = quoted;
+        this.header = header;
+        this.bufferBytes = bufferBytes;
+    }
+
+    /** A comma-separated file as described by RFC 4180, with fields optionally quoted with '"', and a header line */
+    public static DelimitedFile csv(Path path) {
+        return new DelimitedFile(path, ',', true, true, DEFAULT_BUFFER_BYTES);
+    }
+
+    /** A tab-separated file, where fields are never quoted, with a header line */
+    public static DelimitedFile tsv(Path path) {
+        return new DelimitedFile(path, '\t', false, true, DEFAULT_BUFFER_BYTES);
+    }
+
+    /** Returns a copy of this file with the given field delimiter, e.g. ';' */
+    public DelimitedFile delimiter(char delimiter) {
+        return new DelimitedFile(path, delimiter, quoted, header, bufferBytes);
+    }
+
+    /**
+     * Returns a copy of this file that does or does not have a header line. The fields of the header line are the
+     * headers of the columns that do not have a header set. Default is true.
+     */
+    public DelimitedFile header(boolean header) {
+        return new DelimitedFile(path, delimiter, quoted, header, bufferBytes);
+    }
+
+    /** Returns a copy of this file that is read through a buffer of the given initial size */
+    DelimitedFile bufferBytes(int bufferBytes) {
+        return new DelimitedFile(path, delimiter, quoted, header, bufferBytes);
+    }
+
+    /**
+     * Measures the columns of the file and returns a writer that reads and writes its rows as they are written. If
+     * the budget stops the render while the file is measured, the returned writer writes none of the rows.
+     */
+    TableWriter writer(TableSpec spec, @Nullable RenderBudget budget) {
+        try (DelimitedReader reader = reader()) {
+            if (header && reader.next()) spec = withHeader(spec, reader);
+
+            boolean stopped = false;
+            int numRows = 0, maxFields = 0;
+            int[] maxLineLengths = new int[spec.columns.length];
+            // For decimal aligned columns, the most chars after and before the decimal point of the numeric cells
+            int[] maxFractionLengths = new int[spec.columns.length];
+            int[] maxIntegerLengths = new int[spec.columns.length];
+            DelimitedReader.AsciiView view = new DelimitedReader.AsciiView(new byte[0], 0, 0);
+            while (!(stopped = budget != null && budget.checkRow() != null) && reader.next()) {
+                numRows++;
+                maxFields = Math.max(maxFields, reader.numFields());
+                for (int field = 0; field < reader.numFields(); field++) {
+                    int col = spec.visibleIndex(field);
+                    if (col < 0) continue;
+                    if (col >= maxLineLengths.length) {
+                        maxLineLengths = Arrays.copyOf(maxLineLengths, col + 1);
+                        maxFractionLengths = Arrays.copyOf(maxFractionLengths, col + 1);
+                        maxIntegerLengths = Arrays.copyOf(maxIntegerLengths, col + 1);
+                    }
+
+                    CharSequence cell = reader.field(field, view);
+                    if (cell.length() > maxLineLengths[col])
+                        maxLineLengths[col] = Math.max(maxLineLengths[col], LineUtils.maxLineLength(cell, spec.maxContentLength(col)));
+                    if (isDecimal(spec, col)) {
+                        int fractionLength = AsciiTable.fractionLength(cell);
+                        if (fractionLength < 0) continue;
+                        maxFractionLengths[col] = Math.max(maxFractionLengths[col], fractionLength);
+                        maxIntegerLengths[col] = Math.max(maxIntegerLengths[col], cell.length() - fractionLength);
+                    }
+                }
+            }
+
+            spec = spec.withNumColumns(maxFields);
+            int[] widths = new int[spec.columns.length];
+            for (int col = 0; col < Math.min(widths.length, maxLineLengths.length); col++)
+                widths[col] = Math.max(maxLineLengths[col], maxIntegerLengths[col] + maxFractionLengths[col]);
+            AsciiTable.getContentColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, widths);
+            AsciiTable.fitColWidths(widths, spec.minWidths, spec.borderWidth, spec.maxTableWidth);
+            return stopped ? TableWriter.stopped(spec, widths, budget) : rowWriter(spec, numRows, widths, maxFractionLengths).budget(budget);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private TableWriter rowWriter(TableSpec spec, int numRows, int[] widths, int[] maxFractionLengths) {
+        @Nullable CharSequence[] cells = new CharSequence[spec.columns.length];
+        DelimitedReader.AsciiView[] views = new DelimitedReader.AsciiView[spec.columns.length];
+        for (int col = 0; col < views.length; col++) views[col] = new DelimitedReader.AsciiView(new byte[0], 0, 0);
+
+        return new TableWriter(spec, numRows, widths) {
+            private @Nullable DelimitedReader reader;
+
+            @Override
+            @Nullable CharSequence[] row(int row) {
+                try {
+                    DelimitedReader reader = this.reader;
+                    if (reader == null) {
+                        reader = this.reader = reader();
+                        if (header) reader.next();
+                    }
+                    if (!reader.next())
+                        throw new IOException("File " + path + " has fewer rows than when it was measured");
+
+                    Arrays.fill(cells, null);
+                    for (int field = 0; field < reader.numFields(); field++) {
+                        int col = spec.visibleIndex(field);
+                        if (col < 0 || col >= cells.length) continue;
+
+                        CharSequence cell = reader.field(field, views[col]);
+                        int fractionLength = isDecimal(spec, col) ? AsciiTable.fractionLength(cell) : -1;
+                        cells[col] = fractionLength < 0 || fractionLength == maxFractionLengths[col] ? cell :
+                                AsciiTable.padRight(cell, maxFractionLengths[col] - fractionLength);
+                    }
+                    if (row == numRows() - 1) reader.close();
+                    return cells;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            /** Closes the file also if the render stopped before the last row, e.g. because of a budget */
+            @Override
+            void writeTail(Writer osw) throws IOException {
+                if (reader != null) reader.close();
+                super.writeTail(osw);
+            }
+        };
+    }
+
+    private DelimitedReader reader() throws IOException {
+        return new DelimitedReader(path, delimiter, quoted, bufferBytes);
+    }
+
+    /** Returns a spec where the columns without a header have the fields of the current record as headers */
+    private static TableSpec withHeader(TableSpec spec, DelimitedReader reader) {
+        Column[] columns = new Column[Math.max(spec.rawColumns.length, reader.numFields())];
+        DelimitedReader.AsciiView view = new DelimitedReader.AsciiView(new byte[0], 0, 0);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = i < spec.rawColumns.length ? new Column(spec.rawColumns[i]) : new Column();
+            if (columns[i].getHeader() == null && i < reader.numFields()) columns[i].header(reader.field(i, view).toString());
+        }
+        return new TableSpec(columns, spec.border, spec.lineSeparator, spec.styler, spec.maxTableWidth, spec.cellCache);
+    }
+
+    private static boolean isDecimal(TableSpec spec, int col) {
+        return col < spec.dataAligns.length && spec.dataAligns[col] == HorizontalAlign.DECIMAL;
+    }
+}
@@ -0,0 +1,203 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a UTF-8 encoded CSV or TSV file one at a time through a reused buffer, which only grows if a
+ * single record does not fit in it. The fields of the current record are byte ranges in the buffer, fields that are
+ * plain ASCII are returned as views of the buffer, the others are decoded to strings.
+ * <p>
+ * Fields are separated by the delimiter and records by "\n", "\r\n" or "\r". If quoting is enabled, a field that
+ * starts with '"' ends at the next '"' that is not doubled, and may contain delimiters and line breaks.
+ * <p>
+ * The file is read with a {@link FileInputStream} rather than a file channel, as a channel is closed if the reading
+ * thread is interrupted, while an interrupted render should end with the rows written so far.
+ */
+@NullMarked
+class DelimitedReader implements Closeable {
+    private static final int NON_ASCII = 1, ESCAPED_QUOTES = 2;
+
+    private final InputStream in;
+    private final byte delimiter;
+    private final boolean quoted;
+    private byte[] buffer;
+    /** Start of the next record in the buffer, and the end of the bytes read into the buffer */
+    private int position = 0, limit = 0;
+    private boolean endOfFile = false;
+
+    private int numFields = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] flags = new int[16];
+
+    DelimitedReader(Path path, char delimiter, boolean quoted, int bufferBytes) throws IOException {
+        this.in = new FileInputStream(path.toFile());
+        this.delimiter = (byte) delimiter;
+        this.quoted = quoted;
+        this.buffer = new byte[bufferBytes];
+    }
+
+    /** Reads the next record, returns false if there are no more records */
+    boolean next() throws IOException {
+        while (true) {
+            if (position < limit) {
+                int end = parse(position);
+                if (end >= 0) {
+                    position = end;
+                    return true;
+                }
+            } else if (endOfFile) return false;
+            fill();
+        }
+    }
+
+    /** Returns the number of fields of the current record */
+    int numFields() {
+        return numFields;
+    }
+
+    /**
+     * Returns the given field of the current record. Plain ASCII fields are returned by setting the given view to
+     * them, the view is only valid until the next record is read.
+     */
+    CharSequence field(int field, AsciiView view) {
+        int start = starts[field], length = ends[field] - start;
+        if (flags[field] == 0) return view.set(buffer, start, length);
+
+        String text = new String(buffer, start, length, StandardCharsets.UTF_8);
+        return (flags[field] & ESCAPED_QUOTES) != 0 ? text.replace("\"\"", "\"") : text;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** Moves the unparsed bytes to the start of the buffer, growing it if it is full, and reads more of the file */
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) endOfFile = true;
+        else limit += read;
+    }
+
+    /** Parses the record that starts at the given position, returns the start of the next record, or -1 if more bytes must be read first */
+    private int parse(int pos) {
+        numFields = 0;
+        while (true) {
+            int start = pos, end, fieldFlags = 0;
+            if (quoted && pos < limit && buffer[pos] == '"') {
+                start = ++pos;
+                while (true) {
+                    if (pos == limit) {
+                        if (!endOfFile) return -1;
+                        end = pos;
+                        break;
+                    }
+                    if (buffer[pos] == '"') {
+                        if (pos + 1 == limit && !endOfFile) return -1;
+                        if (pos + 1 < limit && buffer[pos + 1] == '"') {
+                            fieldFlags |= ESCAPED_QUOTES;
+                            pos += 2;
+                            continue;
+                        }
+                        end = pos++;
+                        break;
+                    }
+                    if (buffer[pos] < 0) fieldFlags |= NON_ASCII;
+                    pos++;
+                }
+                // Anything between the closing quote and the end of the field is ignored
+                while (pos < limit && buffer[pos] != delimiter && buffer[pos] != '\n' && buffer[pos] != '\r') pos++;
+            } else {
+                while (pos < limit && buffer[pos] != delimiter && buffer[pos] != '\n' && buffer[pos] != '\r') {
+                    if (buffer[pos] < 0) fieldFlags |= NON_ASCII;
+                    pos++;
+                }
+                end = pos;
+            }
+            if (pos == limit && !endOfFile) return -1;
+            addField(start, end, fieldFlags);
+
+            if (pos == limit) return pos;
+            if (buffer[pos] == delimiter) {
+                pos++;
+                continue;
+            }
+            if (buffer[pos] == '\r') {
+                if (pos + 1 == limit && !endOfFile) return -1;
+                return pos + 1 < limit && buffer[pos + 1] == '\n' ? pos + 2 : pos + 1;
+            }
+            return pos + 1;
+        }
+    }
+
+    private void addField(int start, int end, int fieldFlags) {
+        if (numFields == starts.length) {
+            starts = Arrays.copyOf(starts, 2 * numFields);
+            ends = Arrays.copyOf(ends, 2 * numFields);
+            flags = Arrays.copyOf(flags, 2 * numFields);
+        }
+        starts[numFields] = start;
+        ends[numFields] = end;
+        flags[numFields++] = fieldFlags;
+    }
+
+    /** A view of an ASCII field in the buffer */
+    static class AsciiView implements CharSequence {
+        private byte[] buffer;
+        private int offset;
+        private int length;
+
+        AsciiView(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        AsciiView set(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for field of length " + length);
+            return (char) buffer[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > length)
+                throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is out of bounds for field of length " + length);
+            return new AsciiView(buffer, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(buffer, offset, length, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
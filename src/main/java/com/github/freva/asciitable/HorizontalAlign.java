@@ -1,5 +1,12 @@
 package com.github.freva.asciitable;
 
 public enum HorizontalAlign {
-    LEFT, CENTER, RIGHT
+    LEFT, CENTER, RIGHT,
+
+    /**
+     * Right align the cells so that their decimal points line up, cells without a decimal point are aligned by the
+     * end of their last digit. Only applies to data cells, when used for header or footer it is the same as RIGHT.
+     * @since 1.13.0
+     */
+    DECIMAL
 }
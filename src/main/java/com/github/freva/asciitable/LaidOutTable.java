@@ -0,0 +1,250 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * A table whose data has been converted to strings, measured, wrapped and justified, so that it can be written
+ * with any number of different borders, e.g. with {@link AsciiTable#FANCY_ASCII} to a terminal and with
+ * {@link AsciiTable#NO_BORDERS} to a log file, while only paying for the layout once.
+ * <p>
+ * The column widths only depend on the border if the table has a max width, see
+ * {@link AsciiTableBuilder#maxTableWidth(int)}, in which case the width taken up by the border may shrink the
+ * columns. The cells are then wrapped and justified again for the new widths, once per distinct set of widths.
+ * <p>
+ * Created with {@link TableSpec#layout(Object[][])} or {@link AsciiTableBuilder#layout()}. Instances may be
+ * written from any number of threads.
+ */
+@NullMarked
+public final class LaidOutTable {
+    private final TableSpec spec;
+    private final @Nullable CharSequence[][] data;
+    /** Width of each column needed to fit its contents, before fitting the table within its max width */
+    private final int[] contentWidths;
+    private final List<Cells> layouts = new ArrayList<>();
+
+    LaidOutTable(TableSpec spec, @Nullable Object[][] data) {
+        spec = spec.withNumColumns(AsciiTable.getNumColumns(spec.rawColumns, data));
+        @Nullable CharSequence[][] cells = AsciiTable.toCells(spec, data);
+        if (spec.hasDecimalAlign) cells = AsciiTable.alignDecimals(spec.columns, cells);
+
+        this.spec = spec;
+        this.data = cells;
+        this.contentWidths = AsciiTable.getContentColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, cells);
+    }
+
+    /** Returns the table with the border it was laid out with */
+    public String asString() {
+        return RenderContext.asString(writer(spec));
+    }
+
+    /** Returns the table with the given border */
+    public String asString(@Nullable Character[] border) {
+        return RenderContext.asString(writer(spec.withBorder(border)));
+    }
+
+    /** Write the table with the border it was laid out with to the given output stream. The output stream must be closed by the caller. */
+    public void writeTo(OutputStream os) {
+        RenderContext.writeTo(writer(spec), os);
+    }
+
+    /** Write the table with the given border to the given output stream. The output stream must be closed by the caller. */
+    public void writeTo(@Nullable Character[] border, OutputStream os) {
+        RenderContext.writeTo(writer(spec.withBorder(border)), os);
+    }
+
+    /** Returns the number of lines in the table with the border it was laid out with */
+    public int numLines() {
+        return new Viewport(spec).numLines;
+    }
+
+    /** Returns the number of lines in the table with the given border */
+    public int numLines(@Nullable Character[] border) {
+        return new Viewport(spec.withBorder(border)).numLines;
+    }
+
+    /**
+     * Returns the lines from fromLine, inclusive, to toLine, exclusive, of the table with the border it was laid out
+     * with, joined by the line separator. The cost depends on the number of lines returned, not on where they are in
+     * the table, so this may be used to scroll through a table that is too large to write in full.
+     */
+    public String lines(int fromLine, int toLine) {
+        return new Viewport(spec).lines(fromLine, toLine);
+    }
+
+    /** Same as {@link #lines(int, int)}, but of the table with the given border */
+    public String lines(@Nullable Character[] border, int fromLine, int toLine) {
+        return new Viewport(spec.withBorder(border)).lines(fromLine, toLine);
+    }
+
+    private TableWriter writer(TableSpec bordered) {
+        int[] colWidths = AsciiTable.fitColWidths(contentWidths.clone(), bordered.minWidths, bordered.borderWidth, bordered.maxTableWidth);
+        return new TableWriter(bordered, data, colWidths, cells(colWidths));
+    }
+
+    /** Returns the cells justified to the given column widths, they are only laid out the first time */
+    private synchronized Cells cells(int[] colWidths) {
+        for (Cells cells : layouts) {
+            if (Arrays.equals(cells.colWidths, colWidths)) return cells;
+        }
+
+        Cells cells = new Cells(spec, data, colWidths);
+        layouts.add(cells);
+        return cells;
+    }
+
+    /**
+     * The lines of the table with a given border. A data row is one or more lines, followed by a separator line
+     * unless it is the last row or the border has no separators between rows. The first line of a row is therefore
+     * found from the prefix sums of the row heights in {@link Cells#rowOffsets}. A table without rows has an empty
+     * line where the rows would be, if nothing is written before it, or if it follows a header without a separator
+     * line, as the line separators that would have separated the rows from the rest of the table are still written.
+     */
+    private class Viewport {
+        private final TableSpec bordered;
+        private final int[] colWidths;
+        private final Cells cells;
+        private final int headerStart;
+        private final int rowSeparator;
+        private final int dataStart;
+        /** Whether there is an empty line at {@link #dataStart} because the table has no rows, see above */
+        private final boolean emptyDataLine;
+        private final int footerStart;
+        private final int numLines;
+        private final StringWriter osw = new StringWriter();
+        private int fromLine;
+
+        private Viewport(TableSpec bordered) {
+            @Nullable Character[] border = bordered.border;
+            this.bordered = bordered;
+            this.colWidths = AsciiTable.fitColWidths(contentWidths.clone(), bordered.minWidths, bordered.borderWidth, bordered.maxTableWidth);
+            this.cells = cells(colWidths);
+
+            int numRows = cells.rows.size();
+            this.headerStart = border[1] != null ? 1 : 0;
+            this.rowSeparator = border[15] != null ? 1 : 0;
+            this.dataStart = headerStart + (spec.hasHeader ? cells.headerHeight + (border[8] != null ? 1 : 0) : 0);
+            this.emptyDataLine = numRows == 0 && (spec.hasHeader ? border[8] == null : headerStart == 0);
+            this.footerStart = dataStart + (emptyDataLine ? 1 : cells.rowOffsets[numRows] + Math.max(0, numRows - 1) * rowSeparator);
+            this.numLines = footerStart + (spec.hasFooter ? (border[19] != null ? 1 : 0) + cells.footerHeight : 0) + (border[26] != null ? 1 : 0);
+        }
+
+        private String lines(int fromLine, int toLine) {
+            if (fromLine < 0 || fromLine > toLine || toLine > numLines)
+                throw new IndexOutOfBoundsException("Lines " + fromLine + " to " + toLine + " are out of bounds for table with " + numLines + " lines");
+
+            @Nullable Character[] border = bordered.border;
+            Styler styler = bordered.styler;
+            this.fromLine = fromLine;
+            try {
+                int line = fromLine;
+                if (line == 0 && headerStart > 0 && line < toLine) line = writeLine(line, border[0], border[1], border[2], border[3]);
+                if (spec.hasHeader) {
+                    line = writeCells(line, toLine, headerStart, cells.header, border[4], border[5], border[6],
+                            styler == null ? null : (col, rows) -> styler.styleHeader(bordered.columns[col], col, rows));
+                    if (line == headerStart + cells.headerHeight && line < dataStart && line < toLine) line = writeLine(line, border[7], border[8], border[9], border[10]);
+                }
+
+                if (emptyDataLine && line == dataStart && line < toLine) {
+                    if (line > fromLine) osw.write(bordered.lineSeparator);
+                    line++;
+                }
+                for (int row = line < footerStart ? findRow(line) : cells.rows.size(); row < cells.rows.size() && line < toLine; row++) {
+                    int rowStart = rowStart(row);
+                    int rowIndex = row;
+                    line = writeCells(line, toLine, rowStart, cells.rows.get(row), border[11], border[12], border[13],
+                            styler == null ? null : (col, rows) -> styler.styleCell(bordered.columns[col], rowIndex, col, rows));
+                    if (row < cells.rows.size() - 1 && rowSeparator > 0 && line < toLine)
+                        line = writeLine(line, border[14], border[15], border[16], border[17]);
+                }
+
+                if (spec.hasFooter) {
+                    int footerSeparator = border[19] != null ? 1 : 0;
+                    if (line == footerStart && footerSeparator > 0 && line < toLine) line = writeLine(line, border[18], border[19], border[20], border[21]);
+                    line = writeCells(line, toLine, footerStart + footerSeparator, cells.footer, border[22], border[23], border[24],
+                            styler == null ? null : (col, rows) -> styler.styleFooter(bordered.columns[col], col, rows));
+                }
+                if (line < toLine) writeLine(line, border[25], border[26], border[27], border[28]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return osw.toString();
+        }
+
+        /** Returns the first line of the given data row */
+        private int rowStart(int row) {
+            return dataStart + cells.rowOffsets[row] + row * rowSeparator;
+        }
+
+        /** Returns the data row that the given line is part of, either as one of its lines or as the separator after it */
+        private int findRow(int line) {
+            int low = 0, high = cells.rows.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (rowStart(mid) <= line) low = mid;
+                else high = mid - 1;
+            }
+            return low;
+        }
+
+        private int writeLine(int line, @Nullable Character left, @Nullable Character middle,
+                              @Nullable Character columnSeparator, @Nullable Character right) throws IOException {
+            if (line > fromLine) osw.write(bordered.lineSeparator);
+            AsciiTable.writeLine(osw, colWidths, left, middle, columnSeparator, right);
+            return line + 1;
+        }
+
+        /** Writes the lines of the given cells, which start at the given line, that are between line and toLine */
+        private int writeCells(int line, int toLine, int start, List<List<String>> cells, @Nullable Character left,
+                               @Nullable Character columnSeparator, @Nullable Character right,
+                               @Nullable BiFunction<Integer, List<String>, List<String>> styler) throws IOException {
+            int end = Math.min(toLine, start + AsciiTable.numLines(cells));
+            if (line < start || line >= end) return line;
+
+            if (line > fromLine) osw.write(bordered.lineSeparator);
+            AsciiTable.writeJustifiedCells(osw, colWidths, cells, left, columnSeparator, right, bordered.lineSeparator, styler, line - start, end - start);
+            return end;
+        }
+    }
+
+    /** The lines of every cell in the table, justified to a set of column widths */
+    static class Cells {
+        private final int[] colWidths;
+        final List<List<String>> header;
+        final List<List<List<String>>> rows;
+        final List<List<String>> footer;
+        final int headerHeight;
+        final int footerHeight;
+        /** Total number of lines of the data rows before each row, the last element is the total of all the rows */
+        final int[] rowOffsets;
+
+        private Cells(TableSpec spec, @Nullable CharSequence[][] data, int[] colWidths) {
+            this.colWidths = colWidths;
+            this.header = spec.hasHeader ?
+                    AsciiTable.justifyCells(colWidths, spec.overflows, spec.headerAligns, spec.header, spec.cellCache) :
+                    Collections.emptyList();
+            this.rows = new ArrayList<>(data.length);
+            for (@Nullable CharSequence[] row : data)
+                rows.add(AsciiTable.justifyCells(colWidths, spec.overflows, spec.dataAligns, row, spec.cellCache));
+            this.footer = spec.hasFooter ?
+                    AsciiTable.justifyCells(colWidths, spec.overflows, spec.footerAligns, spec.footer, spec.cellCache) :
+                    Collections.emptyList();
+
+            this.headerHeight = AsciiTable.numLines(header);
+            this.footerHeight = AsciiTable.numLines(footer);
+            this.rowOffsets = new int[rows.size() + 1];
+            for (int row = 0; row < rows.size(); row++)
+                rowOffsets[row + 1] = rowOffsets[row] + AsciiTable.numLines(rows.get(row));
+        }
+    }
+}
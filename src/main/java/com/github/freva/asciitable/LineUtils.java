@@ -1,7 +1,7 @@
 package com.github.freva.asciitable;
 
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Spliterator;
 import java.util.Spliterators;
@@ -15,17 +15,53 @@ public class LineUtils {
     public static Stream<String> lines(String str) {
         return StreamSupport.stream(
                 Spliterators.spliteratorUnknownSize(new LineIterator(str), Spliterator.NONNULL),
-                false);
+                false).map(CharSequence::toString);
     }
 
-    public static int maxLineLength(String str) {
-        int max = 0;
+    /**
+     * Same as {@link #lines(String)}, but as a list, and for any char sequence. The lines are
+     * {@link CharSequence#subSequence(int, int) sub sequences} of the given sequence, i.e. substrings of a string
+     * and views of a {@link java.nio.CharBuffer}.
+     */
+    static List<CharSequence> lineList(CharSequence str) {
+        List<CharSequence> lines = new ArrayList<>(1);
         LineIterator lineIterator = new LineIterator(str);
-        while (lineIterator.hasNext()) {
-            int start = lineIterator.getPosition();
-            max = Math.max(max, lineIterator.getLineEndPositionAndAdvanceToNextLine() - start);
+        while (lineIterator.hasNext()) lines.add(lineIterator.next());
+        return lines;
+    }
+
+    public static int maxLineLength(String str) {
+        return maxLineLength((CharSequence) str);
+    }
+
+    /** Same as {@link #maxLineLength(String)}, but for any char sequence, which is read char by char */
+    static int maxLineLength(CharSequence str) {
+        return maxLineLength(str, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #maxLineLength(CharSequence)}, but returns the given limit if any line is at least that long.
+     * Stops reading as soon as such a line is found, so measuring a huge cell for a column of limited width only
+     * reads as far as its first line that does not fit.
+     */
+    static int maxLineLength(CharSequence str, int limit) {
+        int max = 0, length = 0;
+        for (int i = 0; i < str.length() && max < limit; i++) {
+            char ch = str.charAt(i);
+            if (ch == '\n' || ch == '\r') length = 0;
+            else max = Math.max(max, ++length);
+        }
+        return Math.min(max, limit);
+    }
+
+    /** Returns whether the text has no line breaks, strings are searched with {@link String#indexOf(int)} */
+    static boolean isSingleLine(CharSequence str) {
+        if (str instanceof String) return ((String) str).indexOf('\n') < 0 && ((String) str).indexOf('\r') < 0;
+        for (int i = 0; i < str.length(); i++) {
+            char ch = str.charAt(i);
+            if (ch == '\n' || ch == '\r') return false;
         }
-        return max;
+        return true;
     }
 
     /**
@@ -36,41 +72,49 @@ public class LineUtils {
      *
      * @param str String to split
      * @param maxCharInLine Max length of each split
-     * @return List of string that form original string, but each string is as-short-or-shorter than maxCharInLine
+     * @return List of sub sequences that form original string, but each is as-short-or-shorter than maxCharInLine
+     * @throws IllegalArgumentException if maxCharInLine is not positive, as the string can then not be split
      */
-    static List<String> splitTextIntoLinesOfMaxLength(String str, int maxCharInLine) {
-        List<String> lines = new LinkedList<>();
-        StringBuilder line = new StringBuilder(maxCharInLine);
+    static List<CharSequence> splitTextIntoLinesOfMaxLength(CharSequence str, int maxCharInLine) {
+        if (maxCharInLine <= 0)
+            throw new IllegalArgumentException("Max chars in line must be positive, was " + maxCharInLine);
+        List<CharSequence> lines = new ArrayList<>(str.length() / maxCharInLine + 1);
         int offset = 0;
 
         while (offset < str.length() && maxCharInLine < str.length() - offset) {
-            int spaceToWrapAt = str.lastIndexOf(' ', offset + maxCharInLine);
+            int spaceToWrapAt = lastIndexOfSpace(str, offset + maxCharInLine);
 
             if (offset < spaceToWrapAt) {
-                line.append(str, offset, spaceToWrapAt);
+                lines.add(str.subSequence(offset, spaceToWrapAt));
                 offset = spaceToWrapAt + 1;
             } else {
-                line.append(str, offset, offset + maxCharInLine);
+                lines.add(str.subSequence(offset, offset + maxCharInLine));
                 offset += maxCharInLine;
             }
-
-            lines.add(line.toString());
-            line.setLength(0);
         }
 
-        line.append(str.substring(offset));
-        lines.add(line.toString());
-
+        lines.add(str.subSequence(offset, str.length()));
         return lines;
     }
 
+    private static int lastIndexOfSpace(CharSequence str, int fromIndex) {
+        if (str instanceof String) return ((String) str).lastIndexOf(' ', fromIndex);
+        for (int i = Math.min(fromIndex, str.length() - 1); i >= 0; i--) {
+            if (str.charAt(i) == ' ') return i;
+        }
+        return -1;
+    }
+
     @NullMarked
-    private static class LineIterator implements Iterator<String> {
-        private final String str;
+    static class LineIterator implements Iterator<CharSequence> {
+        private final CharSequence str;
         private int position = 0;
         private boolean newlineLast = true;
+        /** Index of the next '\n' and '\r' in a string at or after the position, or its length if there are none */
+        private int nextNewline = -1;
+        private int nextReturn = -1;
 
-        private LineIterator(String str) {
+        LineIterator(CharSequence str) {
             this.str = str;
         }
 
@@ -80,27 +124,39 @@ public class LineUtils {
         }
 
         @Override
-        public String next() {
+        public CharSequence next() {
             int start = position;
-            return str.substring(start, getLineEndPositionAndAdvanceToNextLine());
+            return str.subSequence(start, getLineEndPositionAndAdvanceToNextLine());
         }
 
         public int getLineEndPositionAndAdvanceToNextLine() {
-            newlineLast = false;
-            for (; position < str.length(); position++) {
-                char ch = str.charAt(position);
-                if (ch == '\n') {
-                    newlineLast = true;
-                    return position++;
-                }
-                if (ch == '\r') {
-                    newlineLast = true;
-                    if (position + 1 == str.length() || str.charAt(position + 1) != '\n') return position++;
-                    position += 2;
-                    return position - 2;
-                }
+            int end = nextLineBreak();
+            newlineLast = end < str.length();
+            if (!newlineLast) position = end;
+            else if (str.charAt(end) == '\r' && end + 1 < str.length() && str.charAt(end + 1) == '\n') position = end + 2;
+            else position = end + 1;
+            return end;
+        }
+
+        /** Returns the index of the next line break at or after the position, or the length if there are none */
+        private int nextLineBreak() {
+            if (str instanceof String) {
+                // String.indexOf() is an intrinsic that is much faster than reading char by char on long lines
+                String string = (String) str;
+                if (nextNewline < position) nextNewline = indexOrLength(string, string.indexOf('\n', position));
+                if (nextReturn < position) nextReturn = indexOrLength(string, string.indexOf('\r', position));
+                return Math.min(nextNewline, nextReturn);
             }
-            return position;
+
+            for (int i = position; i < str.length(); i++) {
+                char ch = str.charAt(i);
+                if (ch == '\n' || ch == '\r') return i;
+            }
+            return str.length();
+        }
+
+        private static int indexOrLength(String str, int index) {
+            return index < 0 ? str.length() : index;
         }
 
         public int getPosition() {
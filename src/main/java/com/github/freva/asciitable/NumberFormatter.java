@@ -0,0 +1,164 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * Formats numbers with a fixed number of decimals, optionally with a thousands separator and SI or binary byte
+ * suffixes. The numbers are written directly into a char buffer, which is much cheaper than
+ * {@link String#format(String, Object...)}. Decimals are rounded {@link RoundingMode#HALF_UP half up}, the same as
+ * {@code %.Nf} does, and the decimal separator is always '.'.
+ * <p>
+ * Instances are immutable and may be shared between columns and threads, see
+ * {@link Column#withNumber(java.util.function.Function, NumberFormatter)}.
+ */
+@NullMarked
+public class NumberFormatter {
+    private static final String[] NO_SUFFIXES = {""};
+    private static final String[] SI_SUFFIXES = {"", "k", "M", "G", "T", "P", "E"};
+    private static final String[] BYTE_SUFFIXES = {" B", " KiB", " MiB", " GiB", " TiB", " PiB", " EiB"};
+    private static final int MAX_DECIMALS = 15;
+    private static final double MAX_FAST_SCALED = 1e15;
+    private static final long[] POWERS_OF_TEN = new long[MAX_DECIMALS + 1];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final int decimals;
+    private final char thousandsSeparator;
+    private final int base;
+    private final String[] suffixes;
+
+    private NumberFormatter(int decimals, char thousandsSeparator, int base, String[] suffixes) {
+        if (decimals < 0 || decimals > MAX_DECIMALS)
+            throw new IllegalArgumentException("Number of decimals must be between 0 and " + MAX_DECIMALS + ", was " + decimals);
+        this.decimals = decimals;
+        this.thousandsSeparator = thousandsSeparator;
+        this.base = base;
+        this.suffixes = suffixes;
+    }
+
+    /** Formats numbers with the given number of decimals, e.g. {@code fixed(2)} formats 1234.567 as "1234.57" */
+    public static NumberFormatter fixed(int decimals) {
+        return new NumberFormatter(decimals, '\0', 1, NO_SUFFIXES);
+    }
+
+    /** Formats numbers scaled to the largest SI prefix below them, e.g. {@code si(1)} formats 1234567 as "1.2M" */
+    public static NumberFormatter si(int decimals) {
+        return new NumberFormatter(decimals, '\0', 1000, SI_SUFFIXES);
+    }
+
+    /** Formats numbers of bytes scaled to the largest binary prefix, e.g. {@code bytes(1)} formats 1536 as "1.5 KiB" */
+    public static NumberFormatter bytes(int decimals) {
+        return new NumberFormatter(decimals, '\0', 1024, BYTE_SUFFIXES);
+    }
+
+    /** Returns a copy of this formatter that groups the integer digits by thousands, e.g. "1,234,567.00" */
+    public NumberFormatter thousandsSeparator(char thousandsSeparator) {
+        return new NumberFormatter(decimals, thousandsSeparator, base, suffixes);
+    }
+
+    /** Formats integral numbers exactly, other numbers are formatted as their {@link Number#doubleValue()} */
+    public String format(Number value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+            return format(value.longValue());
+        return format(value.doubleValue());
+    }
+
+    public String format(long value) {
+        if (base != 1 && (value >= base || value <= -base))
+            return format((double) value);
+
+        char[] digits = new char[20 + decimals];
+        int numDigits = writeDigits(digits, value);
+        for (int i = 0; i < decimals; i++) digits[numDigits++] = '0';
+        return format(value < 0, digits, numDigits, 0);
+    }
+
+    public String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return Double.toString(value);
+
+        int unit = 0;
+        while (unit < suffixes.length - 1 && Math.abs(value) >= base) {
+            value /= base;
+            unit++;
+        }
+
+        long unscaled = round(value);
+        // Rounding may carry over to the next unit, e.g. 999.96k is 1000.0k with 1 decimal
+        if (unit < suffixes.length - 1 && unscaled != Long.MIN_VALUE && Math.abs(unscaled) >= base * POWERS_OF_TEN[decimals]) {
+            value /= base;
+            unit++;
+            unscaled = round(value);
+        }
+
+        if (unscaled == Long.MIN_VALUE) {
+            BigInteger exact = BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).unscaledValue();
+            char[] digits = exact.abs().toString().toCharArray();
+            return format(exact.signum() < 0, digits, digits.length, unit);
+        }
+
+        char[] digits = new char[20];
+        int numDigits = writeDigits(digits, unscaled);
+        return format(unscaled < 0, digits, numDigits, unit);
+    }
+
+    /**
+     * Returns the value multiplied by 10^decimals and rounded half up, or {@link Long#MIN_VALUE} if the value is
+     * too large to be rounded exactly with doubles
+     */
+    private long round(double value) {
+        double scaled = value * POWERS_OF_TEN[decimals];
+        if (Math.abs(scaled) >= MAX_FAST_SCALED) return Long.MIN_VALUE;
+
+        // Close to a tie the binary value may be on the wrong side of .5, so round the shortest decimal representation
+        double fraction = Math.abs(scaled - Math.floor(scaled) - 0.5);
+        if (fraction <= Math.max(1e-7, 8 * Math.ulp(scaled)))
+            return BigDecimal.valueOf(value).setScale(decimals, RoundingMode.HALF_UP).unscaledValue().longValue();
+        return Math.round(scaled);
+    }
+
+    /** Writes the absolute value of the given number to the start of the array and returns the number of digits */
+    private static int writeDigits(char[] digits, long value) {
+        int end = digits.length;
+        int pos = end;
+        do {
+            digits[--pos] = (char) ('0' + Math.abs(value % 10));
+            value /= 10;
+        } while (value != 0);
+        System.arraycopy(digits, pos, digits, 0, end - pos);
+        return end - pos;
+    }
+
+    /** @param digits Digits of the absolute value multiplied by 10^decimals, most significant digit first */
+    private String format(boolean negative, char[] digits, int numDigits, int unit) {
+        int numIntegerDigits = Math.max(1, numDigits - decimals);
+        boolean isZero = true;
+        for (int i = 0; i < numDigits && isZero; i++) isZero = digits[i] == '0';
+
+        String suffix = suffixes[unit];
+        int numSeparators = thousandsSeparator == '\0' ? 0 : (numIntegerDigits - 1) / 3;
+        char[] result = new char[(negative && !isZero ? 1 : 0) + numIntegerDigits + numSeparators +
+                (decimals > 0 ? decimals + 1 : 0) + suffix.length()];
+
+        int pos = 0;
+        if (negative && !isZero) result[pos++] = '-';
+        // Index of the digit to write, digits before the start of the array are leading zeros
+        int digit = numDigits - decimals - numIntegerDigits;
+        for (int i = 0; i < numIntegerDigits; i++, digit++) {
+            if (numSeparators > 0 && i > 0 && (numIntegerDigits - i) % 3 == 0) result[pos++] = thousandsSeparator;
+            result[pos++] = digit < 0 ? '0' : digits[digit];
+        }
+        if (decimals > 0) {
+            result[pos++] = '.';
+            for (int i = 0; i < decimals; i++, digit++) result[pos++] = digit < 0 ? '0' : digits[digit];
+        }
+        suffix.getChars(0, suffix.length(), result, pos);
+        return new String(result);
+    }
+}
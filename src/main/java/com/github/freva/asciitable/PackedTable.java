@@ -0,0 +1,252 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An append-only table for large tables that are kept in memory between renders, e.g. cached report snapshots. Rather
+ * than an object per cell, the text of the cells is packed into a few large slabs, either {@code byte[]} backed or
+ * direct {@link ByteBuffer}s outside the heap, and each column only keeps an array of slab addresses and an array of
+ * lengths, so the garbage collector has almost nothing to trace however many cells the table has.
+ * <p>
+ * Cells whose chars all fit in Latin-1 take one byte per char, other cells two, so that the renderer can still read
+ * any char of a cell directly. The widest line of each column is measured as the rows are added, so rendering the
+ * table reads each cell once. Columns with {@link HorizontalAlign#DECIMAL} alignment are measured again when
+ * rendered, as they depend on the fractions of all the cells in the column.
+ * <p>
+ * Created with {@link TableSpec#packed()} or {@link TableSpec#packedOffHeap()}. Adding rows is not thread-safe, but
+ * once all the rows are added, the table may be written from any number of threads.
+ */
+@NullMarked
+public final class PackedTable {
+    private static final int MIN_SLAB_BYTES = 1 << 16;
+    private static final int MAX_SLAB_BYTES = 1 << 24;
+    /** Address of a null cell, or of a cell that is missing because its row has fewer columns */
+    private static final long NULL = -1;
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final TableSpec spec;
+    private final boolean offHeap;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    /** Position of the first free byte in the last slab */
+    private int slabPosition = 0;
+    /** Slab index in the upper and position in the lower 32 bits of each cell, indexed by visible column and then row */
+    private long[][] addresses = new long[0][];
+    /** Number of chars of each cell, inverted with ~ for cells with two bytes per char */
+    private int[][] lengths = new int[0][];
+    /** Length of the longest line in each visible column, up to the longest line that fits in the column */
+    private int[] maxLineLengths = new int[0];
+    private int numRows = 0;
+    /** Number of rows the address and length arrays have room for */
+    private int capacity = 16;
+    private int maxRowLength = 0;
+    private long packedBytes = 0;
+
+    PackedTable(TableSpec spec, boolean offHeap) {
+        this.spec = spec;
+        this.offHeap = offHeap;
+    }
+
+    /** Returns the number of rows in the table */
+    public int size() {
+        return numRows;
+    }
+
+    /** Returns the number of bytes taken up by the text of the cells */
+    public long getPackedBytes() {
+        return packedBytes;
+    }
+
+    /** Appends the given row to the end of the table, the text of its cells is copied, so the row may be reused */
+    public void addRow(@Nullable Object... row) {
+        @Nullable CharSequence[] cells = AsciiTable.toCells(spec, new Object[][]{row})[0];
+        if (cells.length > addresses.length) addColumns(cells.length);
+        if (numRows == capacity) {
+            capacity *= 2;
+            for (int col = 0; col < addresses.length; col++) {
+                addresses[col] = Arrays.copyOf(addresses[col], capacity);
+                lengths[col] = Arrays.copyOf(lengths[col], capacity);
+            }
+        }
+
+        for (int col = 0; col < addresses.length; col++) {
+            CharSequence cell = col < cells.length ? cells[col] : null;
+            if (cell == null) {
+                addresses[col][numRows] = NULL;
+                continue;
+            }
+
+            pack(cell, col, numRows);
+            if (cell.length() > maxLineLengths[col])
+                maxLineLengths[col] = Math.max(maxLineLengths[col], LineUtils.maxLineLength(cell, spec.maxContentLength(col)));
+        }
+        maxRowLength = Math.max(maxRowLength, cells.length);
+        numRows++;
+    }
+
+    /** Render the table and return it as String */
+    public String asString() {
+        return RenderContext.asString(writer());
+    }
+
+    /** Write the table to the given output stream. The output stream must be closed by the caller. */
+    public void writeTo(OutputStream os) {
+        RenderContext.writeTo(writer(), os);
+    }
+
+    private void addColumns(int numColumns) {
+        int oldNumColumns = addresses.length;
+        addresses = Arrays.copyOf(addresses, numColumns);
+        lengths = Arrays.copyOf(lengths, numColumns);
+        maxLineLengths = Arrays.copyOf(maxLineLengths, numColumns);
+        for (int col = oldNumColumns; col < numColumns; col++) {
+            addresses[col] = new long[capacity];
+            Arrays.fill(addresses[col], NULL);
+            lengths[col] = new int[capacity];
+        }
+    }
+
+    /** Copies the chars of the cell to the last slab, or to a new slab if they do not fit */
+    private void pack(CharSequence cell, int col, int row) {
+        boolean latin1 = true;
+        for (int i = 0; i < cell.length() && latin1; i++) latin1 = cell.charAt(i) <= 0xFF;
+        int numBytes = latin1 ? cell.length() : 2 * cell.length();
+
+        @Nullable ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+        if (slab == null || slab.capacity() - slabPosition < numBytes) {
+            int size = slab == null ? MIN_SLAB_BYTES : Math.min(MAX_SLAB_BYTES, 2 * slab.capacity());
+            slab = offHeap ? ByteBuffer.allocateDirect(Math.max(size, numBytes)) : ByteBuffer.allocate(Math.max(size, numBytes));
+            slabs.add(slab);
+            slabPosition = 0;
+        }
+
+        if (latin1) {
+            for (int i = 0; i < cell.length(); i++) slab.put(slabPosition + i, (byte) cell.charAt(i));
+        } else {
+            for (int i = 0; i < cell.length(); i++) slab.putChar(slabPosition + 2 * i, cell.charAt(i));
+        }
+        addresses[col][row] = (long) (slabs.size() - 1) << 32 | slabPosition;
+        lengths[col][row] = latin1 ? cell.length() : ~cell.length();
+        slabPosition += numBytes;
+        packedBytes += numBytes;
+    }
+
+    private TableWriter writer() {
+        int numVisibleRawColumns = spec.rawColumns.length - (spec.rawColumns.length == 0 ? 0 : spec.numInvisible[spec.numInvisible.length - 1]);
+        TableSpec spec = this.spec.withNumColumns(this.spec.rawColumns.length + Math.max(0, maxRowLength - numVisibleRawColumns));
+        int numColumns = Math.min(addresses.length, spec.columns.length);
+
+        // Number of chars each cell of a decimal aligned column is padded with, or null for other columns
+        int[] @Nullable[] decimalPadding = new int[numColumns][];
+        int[] widths = new int[spec.columns.length];
+        for (int col = 0; col < numColumns; col++) {
+            widths[col] = maxLineLengths[col];
+            if (spec.dataAligns[col] == HorizontalAlign.DECIMAL) widths[col] = alignDecimals(col, decimalPadding);
+        }
+        AsciiTable.getContentColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, widths);
+        AsciiTable.fitColWidths(widths, spec.minWidths, spec.borderWidth, spec.maxTableWidth);
+
+        // The cells of the row being written are views of the slabs, which are reused for every row of this render
+        @Nullable CharSequence[] rowCells = new CharSequence[numColumns];
+        Cell[] views = new Cell[numColumns];
+        for (int col = 0; col < numColumns; col++) views[col] = new Cell(EMPTY, 0, 0);
+        return new TableWriter(spec, numRows, widths) {
+            @Override
+            @Nullable CharSequence[] row(int row) {
+                for (int col = 0; col < numColumns; col++) {
+                    long address = addresses[col][row];
+                    if (address == NULL) rowCells[col] = null;
+                    else {
+                        Cell cell = views[col].set(slabs.get((int) (address >>> 32)), (int) address, lengths[col][row]);
+                        rowCells[col] = decimalPadding[col] == null || decimalPadding[col][row] == 0 ? cell :
+                                AsciiTable.padRight(cell, decimalPadding[col][row]);
+                    }
+                }
+                return rowCells;
+            }
+        };
+    }
+
+    /**
+     * Computes the number of spaces each cell of the given decimal aligned column is padded with so that their
+     * decimal points line up, and returns the length of the longest line in the column after padding
+     */
+    private int alignDecimals(int col, int[] @Nullable[] decimalPadding) {
+        int[] fractionLengths = new int[numRows];
+        int maxFractionLength = 0;
+        Cell cell = new Cell(EMPTY, 0, 0);
+        for (int row = 0; row < numRows; row++) {
+            long address = addresses[col][row];
+            fractionLengths[row] = address == NULL ? -1 : AsciiTable.fractionLength(cell.set(slabs.get((int) (address >>> 32)), (int) address, lengths[col][row]));
+            maxFractionLength = Math.max(maxFractionLength, fractionLengths[row]);
+        }
+
+        int maxLineLength = maxLineLengths[col];
+        int[] padding = new int[numRows];
+        for (int row = 0; row < numRows; row++) {
+            if (fractionLengths[row] < 0) continue;
+            padding[row] = maxFractionLength - fractionLengths[row];
+            maxLineLength = Math.max(maxLineLength, Cell.numChars(lengths[col][row]) + padding[row]);
+        }
+        decimalPadding[col] = padding;
+        return maxLineLength;
+    }
+
+    /** A view of the chars of a cell in a slab */
+    private static class Cell implements CharSequence {
+        private ByteBuffer slab;
+        private int position;
+        private int length;
+        private boolean twoBytesPerChar;
+
+        /** @param length Number of chars, inverted with ~ if the cell has two bytes per char */
+        Cell(ByteBuffer slab, int position, int length) {
+            this.slab = slab;
+            set(slab, position, length);
+        }
+
+        Cell set(ByteBuffer slab, int position, int length) {
+            this.slab = slab;
+            this.position = position;
+            this.twoBytesPerChar = length < 0;
+            this.length = numChars(length);
+            return this;
+        }
+
+        static int numChars(int length) {
+            return length < 0 ? ~length : length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length)
+                throw new IndexOutOfBoundsException("Index " + index + " is out of bounds for cell of length " + length);
+            return twoBytesPerChar ? slab.getChar(position + 2 * index) : (char) (slab.get(position + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || start > end || end > length)
+                throw new IndexOutOfBoundsException("Range " + start + " to " + end + " is out of bounds for cell of length " + length);
+            return new Cell(slab, position + (twoBytesPerChar ? 2 * start : start), twoBytesPerChar ? ~(end - start) : end - start);
+        }
+
+        @Override
+        public String toString() {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) chars[i] = charAt(i);
+            return new String(chars);
+        }
+    }
+}
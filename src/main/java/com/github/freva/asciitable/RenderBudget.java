@@ -0,0 +1,169 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The limits of a single render, and what the render has used of them so far. The time limit starts when the budget
+ * is created, before the columns are measured. The time limit and the interrupt status of the rendering thread are
+ * checked before each data row is measured or written. The output limits are counted as
+ * the table is written, a data row is first written to a buffer through a writer that fails once the row no longer
+ * fits, see {@link #count(Writer, boolean)}, so that only whole rows are written. The line that replaces the
+ * dropped rows, the footer and the bottom border are always written, and are not counted.
+ */
+@NullMarked
+class RenderBudget {
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    private final long startNanos = System.nanoTime();
+    private final long maxNanos;
+    private final long maxChars;
+    private final long maxBytes;
+    private final long maxLines;
+    private final @Nullable Consumer<Truncation> listener;
+    /** The last char of the line separator, each of which ends a line */
+    private final int lineEnd;
+    private final Counter counter = new Counter();
+    /** Why the render was stopped regardless of the size of the rows, once it is, so that it stays stopped */
+    private Truncation.@Nullable Reason stopped;
+    /** Chars, bytes when encoded as UTF-8, and lines written so far, the last line is counted once it is started */
+    private long chars = 0, bytes = 0, lines = 1;
+
+    RenderBudget(long maxNanos, long maxChars, long maxBytes, long maxLines, String lineSeparator, @Nullable Consumer<Truncation> listener) {
+        this.maxNanos = maxNanos;
+        this.maxChars = maxChars;
+        this.maxBytes = maxBytes;
+        this.maxLines = maxLines;
+        this.lineEnd = lineSeparator.isEmpty() ? -1 : lineSeparator.charAt(lineSeparator.length() - 1);
+        this.listener = listener;
+    }
+
+    /** Returns whether the output is limited, if not, the output does not need to be counted */
+    boolean limitsOutput() {
+        return maxChars != UNLIMITED || maxBytes != UNLIMITED || maxLines != UNLIMITED;
+    }
+
+    /**
+     * Returns why the next data row may not be measured or written, regardless of its size, or null if it may. Once
+     * a reason is returned, it is returned for all the remaining rows.
+     */
+    Truncation.@Nullable Reason checkRow() {
+        if (stopped != null) return stopped;
+        if (Thread.currentThread().isInterrupted()) stopped = Truncation.Reason.INTERRUPTED;
+        else if (maxNanos != UNLIMITED && System.nanoTime() - startNanos > maxNanos) stopped = Truncation.Reason.RENDER_TIME;
+        return stopped;
+    }
+
+    /**
+     * Returns a writer that counts what is written to the given writer. If limited, the writer throws
+     * {@link Exceeded} before writing the char that exceeds a limit. What is counted is added to the budget by
+     * {@link #commit()}.
+     */
+    Writer count(Writer target, boolean limited) {
+        counter.target = target;
+        counter.limited = limited;
+        counter.chars = counter.bytes = counter.lines = 0;
+        return counter;
+    }
+
+    /** Adds what has been written through the writer returned by {@link #count(Writer, boolean)} to the budget */
+    void commit() {
+        chars += counter.chars;
+        bytes += counter.bytes;
+        lines += counter.lines;
+    }
+
+    /** Reports that the rows from the given row were dropped, the number of rows is -1 if it is not known */
+    Truncation truncate(Truncation.Reason reason, int rowsWritten, int numRows) {
+        Truncation truncation = new Truncation(reason, rowsWritten, numRows < 0 ? -1 : numRows - rowsWritten, describe(reason));
+        if (listener != null) listener.accept(truncation);
+        return truncation;
+    }
+
+    private String describe(Truncation.Reason reason) {
+        switch (reason) {
+            case RENDER_TIME: return "render time limit of " + TimeUnit.NANOSECONDS.toMillis(maxNanos) + " ms reached";
+            case OUTPUT_CHARS: return "output limit of " + maxChars + " chars reached";
+            case OUTPUT_BYTES: return "output limit of " + maxBytes + " bytes reached";
+            case OUTPUT_LINES: return "output limit of " + maxLines + " lines reached";
+            default: return "rendering interrupted";
+        }
+    }
+
+    /** Thrown by a limited counting writer when a limit would be exceeded */
+    static class Exceeded extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final Truncation.Reason reason;
+
+        private Exceeded(Truncation.Reason reason) {
+            super(reason.name(), null, false, false);
+            this.reason = reason;
+        }
+    }
+
+    private final class Counter extends Writer {
+        private Writer target = new CharArrayWriter(0);
+        private boolean limited;
+        private long chars, bytes, lines;
+
+        @Override
+        public void write(int c) throws IOException {
+            count((char) c);
+            target.write(c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) count(cbuf[i]);
+            target.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) count(str.charAt(i));
+            target.write(str, off, len);
+        }
+
+        @Override
+        public Writer append(@Nullable CharSequence csq) throws IOException {
+            CharSequence text = csq == null ? "null" : csq;
+            return append(text, 0, text.length());
+        }
+
+        @Override
+        public Writer append(@Nullable CharSequence csq, int start, int end) throws IOException {
+            CharSequence text = csq == null ? "null" : csq;
+            for (int i = start; i < end; i++) count(text.charAt(i));
+            target.append(text, start, end);
+            return this;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            target.close();
+        }
+
+        private void count(char c) {
+            chars++;
+            bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+            if (c == lineEnd) lines++;
+            if (!limited) return;
+
+            if (RenderBudget.this.chars + chars > maxChars) throw new Exceeded(Truncation.Reason.OUTPUT_CHARS);
+            if (RenderBudget.this.bytes + bytes > maxBytes) throw new Exceeded(Truncation.Reason.OUTPUT_BYTES);
+            if (RenderBudget.this.lines + lines > maxLines) throw new Exceeded(Truncation.Reason.OUTPUT_LINES);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * The buffers used to render a table, kept per thread and reused across renders, so that rendering many small tables
+ * does not allocate an output stream, a writer with its encoder buffers and padding arrays for each of them.
+ * <p>
+ * The tables are rendered into a char buffer. When writing to an output stream, the chars are encoded with the
+ * default charset whenever the buffer holds more than {@link #FLUSH_CHARS}, when rendering to a string, the buffer
+ * holds the entire table. After each render, the buffer is shrunk if it is much larger than the recently rendered
+ * tables, or larger than {@link #MAX_RETAINED_CHARS}, so that a single huge table does not pin memory.
+ */
+@NullMarked
+class RenderContext extends Writer {
+    static final int FLUSH_CHARS = 8192;
+    static final int MAX_RETAINED_CHARS = 1 << 20;
+    private static final int MIN_CHARS = 1024;
+    private static final ThreadLocal<RenderContext> CONTEXTS = new ThreadLocal<RenderContext>() {
+        @Override
+        protected RenderContext initialValue() {
+            return new RenderContext();
+        }
+    };
+
+    private StringBuilder buffer = new StringBuilder(MIN_CHARS);
+    private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(FLUSH_CHARS);
+    private @Nullable OutputStream os;
+    /** Decaying maximum of the number of chars buffered by recent renders */
+    private int recentChars = MIN_CHARS;
+    private boolean inUse = false;
+
+    /**
+     * Returns the context of the current thread, or a new context if it is already in use, e.g. because a table is
+     * rendered from a {@link Styler} while rendering another table
+     */
+    static RenderContext acquire() {
+        RenderContext context = CONTEXTS.get();
+        if (context.inUse) context = new RenderContext();
+        context.inUse = true;
+        return context;
+    }
+
+    /** Renders the table and returns it as a string */
+    static String asString(TableWriter tableWriter) {
+        RenderContext context = acquire();
+        try {
+            tableWriter.writeTo(context);
+            return context.buffer.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            context.release();
+        }
+    }
+
+    /** Renders the table to the given output stream, encoded with the default charset */
+    static void writeTo(TableWriter tableWriter, OutputStream os) {
+        RenderContext context = acquire();
+        try {
+            context.os = os;
+            tableWriter.writeTo(context);
+            context.encode(true);
+            context.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            context.release();
+        }
+    }
+
+    /** Clears the buffers, shrinking them if they are much larger than needed, so that the context can be acquired again */
+    void release() {
+        recentChars = Math.max(buffer.length(), recentChars - recentChars / 8);
+        if (buffer.capacity() > MAX_RETAINED_CHARS || buffer.capacity() > 4 * recentChars)
+            buffer = new StringBuilder(Math.min(MAX_RETAINED_CHARS, Math.max(MIN_CHARS, recentChars)));
+        else buffer.setLength(0);
+
+        os = null;
+        encoder.reset();
+        bytes.clear();
+        inUse = false;
+    }
+
+    /** Returns the current capacity of the char buffer */
+    int capacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        buffer.append((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        buffer.append(cbuf, off, len);
+        if (os != null && buffer.length() >= FLUSH_CHARS) encode(false);
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        buffer.append(str);
+        if (os != null && buffer.length() >= FLUSH_CHARS) encode(false);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        buffer.append(str, off, off + len);
+        if (os != null && buffer.length() >= FLUSH_CHARS) encode(false);
+    }
+
+    /** Appends the chars of the sequence to the buffer as they are, rather than copying them to a string first */
+    @Override
+    public Writer append(@Nullable CharSequence csq) throws IOException {
+        buffer.append(csq);
+        if (os != null && buffer.length() >= FLUSH_CHARS) encode(false);
+        return this;
+    }
+
+    @Override
+    public Writer append(@Nullable CharSequence csq, int start, int end) throws IOException {
+        buffer.append(csq, start, end);
+        if (os != null && buffer.length() >= FLUSH_CHARS) encode(false);
+        return this;
+    }
+
+    /** Writes the given char the given number of times, without allocating an array for them */
+    void writeRepeated(char c, int num) throws IOException {
+        for (int i = 0; i < num; i++) buffer.append(c);
+        if (os != null && buffer.length() >= FLUSH_CHARS) encode(false);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (os != null) os.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /** Encodes the buffered chars to the output stream, an unpaired high surrogate at the end is kept unless this is the end of input */
+    private void encode(boolean endOfInput) throws IOException {
+        OutputStream os = this.os;
+        if (os == null) return;
+
+        CharBuffer chars = CharBuffer.wrap(buffer);
+        try {
+            while (true) {
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isError()) result.throwException();
+                writeBytes(os);
+                if (result.isUnderflow()) break;
+            }
+            if (endOfInput) {
+                while (encoder.flush(bytes).isOverflow()) writeBytes(os);
+                writeBytes(os);
+            }
+        } catch (CharacterCodingException e) {
+            throw new IOException("Failed to encode table", e);
+        }
+        buffer.delete(0, chars.position());
+    }
+
+    private void writeBytes(OutputStream os) throws IOException {
+        os.write(bytes.array(), 0, bytes.position());
+        bytes.clear();
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rows of a JDBC {@link ResultSet} to render as a table, see {@link AsciiTableBuilder#data(ResultSetData)}. The
+ * columns are created from the {@link ResultSetMetaData}, with the column labels as headers and numeric columns
+ * right aligned, and the rows are read with {@link ResultSet#getString(int)} as they are written, so only the rows
+ * needed to size the columns are held in memory. The widths of the columns are either:
+ * <ul>
+ *     <li>the widths of the rows in a sample of the first rows, see {@link #widthsFromSample(int)}, which is the
+ *     default, with a sample of {@value #DEFAULT_SAMPLE_ROWS} rows,</li>
+ *     <li>the display sizes reported by the driver, see {@link #widthsFromDisplaySize()}, or</li>
+ *     <li>the widths of all the rows, which are then all held in memory, see {@link #widthsFromAllRows()}.</li>
+ * </ul>
+ * Once the columns are sized, cells that do not fit overflow according to the {@link OverflowBehaviour} of their
+ * column, and decimal points are only aligned within a row, as for a {@link StreamingTable}.
+ * <p>
+ * The result set is read from its current position, it is not closed. As a result set can only be read once, the
+ * table can only be rendered once. Instances are immutable.
+ */
+@NullMarked
+public final class ResultSetData {
+    private static final int DEFAULT_SAMPLE_ROWS = 100;
+
+    private final ResultSet resultSet;
+    private final int fetchSize;
+    private final int sampleRows;
+    private final boolean displaySize;
+
+    private ResultSetData(ResultSet resultSet, int fetchSize, int sampleRows, boolean displaySize) {
+        this.resultSet = resultSet;
+        this.fetchSize = fetchSize;
+        this.sampleRows = sampleRows;
+        this.displaySize = displaySize;
+    }
+
+    public static ResultSetData of(ResultSet resultSet) {
+        return new ResultSetData(resultSet, 0, DEFAULT_SAMPLE_ROWS, false);
+    }
+
+    /**
+     * Returns a copy that hints the driver to fetch the given number of rows at a time, see
+     * {@link ResultSet#setFetchSize(int)}. Default is to keep the fetch size of the result set.
+     */
+    public ResultSetData fetchSize(int rows) {
+        if (rows <= 0)
+            throw new IllegalArgumentException("Fetch size must be positive, was " + rows);
+        return new ResultSetData(resultSet, rows, sampleRows, displaySize);
+    }
+
+    /** Returns a copy that sizes the columns from {@link ResultSetMetaData#getColumnDisplaySize(int)}, no rows are buffered */
+    public ResultSetData widthsFromDisplaySize() {
+        return new ResultSetData(resultSet, fetchSize, 0, true);
+    }
+
+    /** Returns a copy that sizes the columns from the first given number of rows, which are buffered until written */
+    public ResultSetData widthsFromSample(int numRows) {
+        if (numRows <= 0)
+            throw new IllegalArgumentException("Number of sample rows must be positive, was " + numRows);
+        return new ResultSetData(resultSet, fetchSize, numRows, false);
+    }
+
+    /** Returns a copy that reads all the rows before sizing the columns, so that every cell fits */
+    public ResultSetData widthsFromAllRows() {
+        return new ResultSetData(resultSet, fetchSize, Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Sizes the columns and returns a writer that reads the remaining rows of the result set as they are written. If
+     * the budget stops the render while the sample is read, the returned writer writes none of the rows.
+     */
+    TableWriter writer(TableSpec spec, @Nullable RenderBudget budget) {
+        try {
+            if (fetchSize > 0) resultSet.setFetchSize(fetchSize);
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            int numColumns = metaData.getColumnCount();
+            spec = withColumns(spec, metaData);
+
+            List<@Nullable Object[]> sample = new ArrayList<>();
+            boolean hasMore = true, stopped = false;
+            while (sample.size() < sampleRows && !(stopped = budget != null && budget.checkRow() != null) && (hasMore = resultSet.next()))
+                sample.add(values(numColumns));
+            @Nullable Object[][] sampleData = sample.toArray(new Object[0][]);
+            if (!hasMore) return new TableWriter(spec, sampleData, null).budget(budget);
+
+            @Nullable CharSequence[][] sampleCells = AsciiTable.toCells(spec, sampleData);
+            if (spec.hasDecimalAlign) sampleCells = AsciiTable.alignDecimals(spec.columns, sampleCells);
+            int[] widths;
+            if (displaySize) {
+                widths = new int[spec.columns.length];
+                for (int column = 0; column < numColumns; column++) {
+                    int col = spec.visibleIndex(column);
+                    if (col >= 0) widths[col] = Math.min(Math.max(0, metaData.getColumnDisplaySize(column + 1)), spec.maxContentLength(col));
+                }
+                AsciiTable.getContentColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, widths);
+                AsciiTable.fitColWidths(widths, spec.minWidths, spec.borderWidth, spec.maxTableWidth);
+            } else {
+                widths = AsciiTable.getColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, sampleCells, spec.borderWidth, spec.maxTableWidth);
+            }
+            return stopped ? TableWriter.stopped(spec, widths, budget) : rowWriter(spec, sampleCells, widths, numColumns).budget(budget);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to read result set", e);
+        }
+    }
+
+    /** Returns a writer of the sample rows, followed by the rows that remain in the result set, read one at a time */
+    private TableWriter rowWriter(TableSpec spec, @Nullable CharSequence[][] sampleCells, int[] widths, int numColumns) {
+        return new TableWriter(spec, -1, widths) {
+            /** Index of the row the result set is positioned at, and whether there is such a row */
+            private int position = sampleCells.length - 1;
+            private boolean positioned = true;
+
+            @Override
+            boolean hasRow(int row) {
+                if (row < sampleCells.length) return true;
+                try {
+                    if (row > position && positioned) {
+                        positioned = resultSet.next();
+                        position = row;
+                    }
+                    return positioned;
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Failed to read result set", e);
+                }
+            }
+
+            @Override
+            @Nullable CharSequence[] row(int row) {
+                if (row < sampleCells.length) return sampleCells[row];
+                try {
+                    @Nullable CharSequence[][] cells = AsciiTable.toCells(spec, new Object[][]{values(numColumns)});
+                    return spec.hasDecimalAlign ? AsciiTable.alignDecimals(spec.columns, cells)[0] : cells[0];
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Failed to read result set", e);
+                }
+            }
+        };
+    }
+
+    /** Returns the values of the row the result set is positioned at */
+    private @Nullable Object[] values(int numColumns) throws SQLException {
+        @Nullable Object[] values = new Object[numColumns];
+        for (int column = 0; column < numColumns; column++) values[column] = resultSet.getString(column + 1);
+        return values;
+    }
+
+    /**
+     * Returns a spec with a column for each column of the result set. The given columns are kept, and get the label of
+     * their column as header if they have none, the other columns are created from the metadata.
+     */
+    private static TableSpec withColumns(TableSpec spec, ResultSetMetaData metaData) throws SQLException {
+        int numColumns = metaData.getColumnCount();
+        Column[] columns = new Column[Math.max(spec.rawColumns.length, numColumns)];
+        for (int i = 0; i < columns.length; i++) {
+            if (i < spec.rawColumns.length) {
+                columns[i] = new Column(spec.rawColumns[i]);
+                if (columns[i].getHeader() == null && i < numColumns) columns[i].header(metaData.getColumnLabel(i + 1));
+            } else {
+                columns[i] = new Column().header(metaData.getColumnLabel(i + 1));
+                if (isNumeric(metaData.getColumnType(i + 1))) columns[i].headerAlign(HorizontalAlign.RIGHT).dataAlign(HorizontalAlign.RIGHT);
+            }
+        }
+        return new TableSpec(columns, spec.border, spec.lineSeparator, spec.styler, spec.maxTableWidth, spec.cellCache);
+    }
+
+    private static boolean isNumeric(int type) {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Renders a table into caller-supplied {@link ByteBuffer}s, e.g. pooled direct buffers of a non-blocking server.
+ * Each call to {@link #render(ByteBuffer)} fills as much of the buffer as fits and returns, the next call continues
+ * exactly where the previous one stopped. Only a single piece of the table (the head, one data row or the tail) is
+ * held in memory at a time, regardless of the size of the table.
+ * <p>
+ * Created with {@link TableSpec#renderer(Object[][], Charset)}. A renderer is not thread-safe.
+ */
+@NullMarked
+public final class ResumableRenderer {
+    private static final CharBuffer EMPTY = CharBuffer.allocate(0);
+
+    private final TableWriter tableWriter;
+    private final CharsetEncoder encoder;
+    private final PieceWriter piece = new PieceWriter();
+    private CharBuffer pending = EMPTY;
+    /** Index of the next piece to render: 0 is the head, followed by one piece per row, and then the tail */
+    private int nextPiece = 0;
+    private boolean tailWritten = false;
+    private boolean flushed = false;
+
+    ResumableRenderer(TableWriter tableWriter, Charset charset) {
+        this.tableWriter = tableWriter;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Writes as much of the remaining table as fits into the given buffer, starting at its position. The buffer
+     * must have room for at least one encoded character, otherwise no progress can be made.
+     *
+     * @return true if the entire table has been written, false if the buffer is full and this method must be called
+     *         again with a buffer that has space remaining
+     */
+    public boolean render(ByteBuffer buffer) {
+        try {
+            while (!flushed) {
+                if (pending.hasRemaining()) {
+                    CoderResult result = encoder.encode(pending, buffer, false);
+                    if (result.isOverflow()) return false;
+                    if (result.isError()) result.throwException();
+                }
+
+                if (!tailWritten) {
+                    nextPiece();
+                    continue;
+                }
+
+                if (encoder.encode(pending, buffer, true).isOverflow()) return false;
+                if (encoder.flush(buffer).isOverflow()) return false;
+                flushed = true;
+            }
+            return true;
+        } catch (CharacterCodingException e) {
+            throw new IllegalStateException("Failed to encode table", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns true once the entire table has been written */
+    public boolean isDone() {
+        return flushed;
+    }
+
+    private void nextPiece() throws IOException {
+        piece.reset();
+        // The encoder may leave an unpaired high surrogate at the end of the previous piece, it continues this piece
+        while (pending.hasRemaining()) piece.write(pending.get());
+
+        if (nextPiece == 0) tableWriter.writeHead(piece);
+        else if (!tableWriter.hasRow(nextPiece - 1) || !tableWriter.writeRow(piece, nextPiece - 1)) {
+            tableWriter.writeTail(piece);
+            tailWritten = true;
+        }
+        nextPiece++;
+        pending = piece.asCharBuffer();
+    }
+
+    private static class PieceWriter extends CharArrayWriter {
+        private CharBuffer asCharBuffer() {
+            return CharBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of rendered data rows for a table that is rendered repeatedly, e.g. a dashboard that is refreshed every few
+ * seconds. A row is keyed by the contents of its cells and maps to all the physical lines of the row, so only the
+ * rows that changed since the previous render are laid out again.
+ * <p>
+ * The cache only keeps the rows of the most recent render, and is invalidated completely when the column widths,
+ * alignments, overflow behaviours, border or line separator change between renders. Rows are not cached when the
+ * table has a {@link Styler}, as the styler may depend on the row number, nor when they have cells that are char
+ * sequences other than strings, as those may be mutable.
+ * <p>
+ * A row cache must only be used by a single table, see {@link AsciiTableBuilder#rowCache(RowCache)}, and that
+ * table must not be rendered concurrently.
+ */
+@NullMarked
+public class RowCache {
+    private @Nullable Layout layout;
+    private Map<List<@Nullable String>, String> previous = new HashMap<>();
+    private Map<List<@Nullable String>, String> current = new HashMap<>();
+    private long hits = 0;
+    private long misses = 0;
+
+    /** Called before the data rows are rendered, invalidates the cache if the layout differs from the previous render */
+    void beginRender(int[] colWidths, HorizontalAlign[] aligns, OverflowBehaviour[] overflows, @Nullable Character[] border, String lineSeparator) {
+        Layout layout = new Layout(colWidths, aligns, overflows, border, lineSeparator);
+        if (!layout.equals(this.layout)) previous.clear();
+        this.layout = layout;
+    }
+
+    /** Returns the rendered row with the given cells, or null if the row was not rendered in the previous render */
+    @Nullable String get(List<@Nullable String> cells) {
+        String rendered = previous.get(cells);
+        if (rendered == null) rendered = current.get(cells);
+        if (rendered == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        current.put(cells, rendered);
+        return rendered;
+    }
+
+    void put(List<@Nullable String> cells, String rendered) {
+        current.put(cells, rendered);
+    }
+
+    /** Called after the data rows are rendered, evicts all the rows that were not part of this render */
+    void endRender() {
+        Map<List<@Nullable String>, String> evicted = previous;
+        previous = current;
+        current = evicted;
+        current.clear();
+    }
+
+    /** Number of rows that were reused from the previous render */
+    public long getHits() {
+        return hits;
+    }
+
+    /** Number of rows that had to be laid out */
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Number of rows currently in the cache */
+    public int size() {
+        return previous.size();
+    }
+
+    /** Removes all rows from the cache and resets the hit and miss counts */
+    public void clear() {
+        layout = null;
+        previous.clear();
+        current.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    private static class Layout {
+        private final int[] colWidths;
+        private final HorizontalAlign[] aligns;
+        private final OverflowBehaviour[] overflows;
+        private final @Nullable Character[] border;
+        private final String lineSeparator;
+
+        private Layout(int[] colWidths, HorizontalAlign[] aligns, OverflowBehaviour[] overflows, @Nullable Character[] border, String lineSeparator) {
+            this.colWidths = colWidths.clone();
+            this.aligns = aligns.clone();
+            this.overflows = overflows.clone();
+            this.border = border.clone();
+            this.lineSeparator = lineSeparator;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Layout layout = (Layout) o;
+            return Arrays.equals(colWidths, layout.colWidths) && Arrays.equals(aligns, layout.aligns) &&
+                    Arrays.equals(overflows, layout.overflows) && Arrays.equals(border, layout.border) &&
+                    lineSeparator.equals(layout.lineSeparator);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(colWidths);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes a table one row at a time as the rows arrive, e.g. for live log output. The top border and the header are
+ * written before the first row, each row is written and flushed by {@link #appendRow(Object...)}, and the footer and
+ * the bottom border are written by {@link #close()}. What has been written is never rewritten, so the column widths
+ * are fixed when the table is created, from the declared min and max widths of the columns, the header and footer,
+ * and optionally a sample of rows, see {@link TableSpec#stream(OutputStream, Object[][])}. Cells that do not fit
+ * overflow according to the {@link OverflowBehaviour} of their column, and decimal points are only aligned within
+ * a row.
+ * <p>
+ * A streaming table is not thread-safe.
+ */
+@NullMarked
+public final class StreamingTable implements Closeable {
+    private final TableSpec spec;
+    private final Writer osw;
+    private final int[] colWidths;
+    private int repeatHeaderEvery = 0;
+    private int numRows = 0;
+    private boolean started = false;
+    private boolean closed = false;
+    /** Whether a line has been written since the last line separator */
+    private boolean insertNewline = false;
+
+    StreamingTable(TableSpec spec, OutputStream os, @Nullable Object[][] sample) {
+        spec = spec.withNumColumns(AsciiTable.getNumColumns(spec.rawColumns, sample));
+        @Nullable CharSequence[][] sampleCells = AsciiTable.toCells(spec, sample);
+        if (spec.hasDecimalAlign) sampleCells = AsciiTable.alignDecimals(spec.columns, sampleCells);
+
+        this.spec = spec;
+        this.osw = new OutputStreamWriter(os);
+        this.colWidths = AsciiTable.getColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, sampleCells, spec.borderWidth, spec.maxTableWidth);
+        // Without a header or sample, a column would otherwise have no room for the rows appended to it
+        for (int col = 0; col < colWidths.length; col++)
+            colWidths[col] = Math.max(colWidths[col], 2 * AsciiTable.PADDING + 1);
+    }
+
+    /** Repeat the header after every given number of rows, 0 to only write it at the top. Default is 0. */
+    public StreamingTable repeatHeaderEvery(int numRows) {
+        if (numRows < 0)
+            throw new IllegalArgumentException("Number of rows must be non-negative, was " + numRows);
+        this.repeatHeaderEvery = numRows;
+        return this;
+    }
+
+    /** Writes the given row and flushes the output stream */
+    public void appendRow(@Nullable Object... row) {
+        appendCells(AsciiTable.toCells(spec, new Object[][]{row})[0]);
+    }
+
+    /** Same as {@link #appendRow(Object...)}, but with the visible cells of the row */
+    void appendCells(@Nullable CharSequence[] cells) {
+        if (closed)
+            throw new IllegalStateException("Cannot append rows to a closed table");
+
+        if (spec.hasDecimalAlign) cells = AsciiTable.alignDecimals(spec.columns, new CharSequence[][]{cells})[0];
+
+        @Nullable Character[] border = spec.border;
+        Styler styler = spec.styler;
+        int rowIndex = numRows;
+        try {
+            if (!started) writeHead();
+            else if (spec.hasHeader && repeatHeaderEvery > 0 && numRows % repeatHeaderEvery == 0) {
+                osw.write(spec.lineSeparator);
+                insertNewline = AsciiTable.writeLine(osw, colWidths, border[7], border[8], border[9], border[10]);
+                writeHeader();
+            } else {
+                osw.write(spec.lineSeparator);
+                insertNewline = AsciiTable.writeLine(osw, colWidths, border[14], border[15], border[16], border[17]);
+            }
+
+            if (insertNewline) osw.write(spec.lineSeparator);
+            AsciiTable.writeData(osw, colWidths, spec.overflows, spec.dataAligns, cells, border[11], border[12], border[13], spec.lineSeparator,
+                    styler == null ? null : (col, rows) -> styler.styleCell(spec.columns[col], rowIndex, col, rows), spec.cellCache);
+            osw.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        numRows++;
+    }
+
+    /** Writes the footer and the bottom border and flushes the output stream. The output stream must be closed by the caller. */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        @Nullable Character[] border = spec.border;
+        Styler styler = spec.styler;
+        try {
+            if (!started) writeHead();
+            if (spec.hasFooter) {
+                osw.write(spec.lineSeparator);
+                insertNewline = AsciiTable.writeLine(osw, colWidths, border[18], border[19], border[20], border[21]);
+                if (insertNewline) osw.write(spec.lineSeparator);
+                AsciiTable.writeData(osw, colWidths, spec.overflows, spec.footerAligns, spec.footer, border[22], border[23], border[24], spec.lineSeparator,
+                        styler == null ? null : (col, rows) -> styler.styleFooter(spec.columns[col], col, rows), spec.cellCache);
+            }
+
+            if (border[26] != null) osw.write(spec.lineSeparator);
+            AsciiTable.writeLine(osw, colWidths, border[25], border[26], border[27], border[28]);
+            osw.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeHead() throws IOException {
+        @Nullable Character[] border = spec.border;
+        started = true;
+        insertNewline = AsciiTable.writeLine(osw, colWidths, border[0], border[1], border[2], border[3]);
+        if (spec.hasHeader) writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        @Nullable Character[] border = spec.border;
+        Styler styler = spec.styler;
+        if (insertNewline) osw.write(spec.lineSeparator);
+        AsciiTable.writeData(osw, colWidths, spec.overflows, spec.headerAligns, spec.header, border[4], border[5], border[6], spec.lineSeparator,
+                styler == null ? null : (col, rows) -> styler.styleHeader(spec.columns[col], col, rows), spec.cellCache);
+        osw.write(spec.lineSeparator);
+        insertNewline = AsciiTable.writeLine(osw, colWidths, border[7], border[8], border[9], border[10]);
+    }
+}
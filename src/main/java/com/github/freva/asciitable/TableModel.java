@@ -0,0 +1,159 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A mutable table for long-lived data that changes a little at a time. The width of the widest cell in each column
+ * is kept up to date as rows are added, removed and changed, so rendering the table does not need to measure every
+ * cell again. For each column, the number of cells of each width is counted, which makes removing the widest cell
+ * cheap as well.
+ * <p>
+ * Columns with {@link HorizontalAlign#DECIMAL} alignment depend on the fractions of all the cells in the column, so
+ * tables with such columns are measured in full when rendered.
+ * <p>
+ * Cells are converted to strings when they are added, so that the counted widths stay correct even if a cell was a
+ * mutable char sequence, e.g. a {@link StringBuilder}, that is changed afterwards.
+ * <p>
+ * Created with {@link TableSpec#model()}. A table model is not thread-safe.
+ */
+@NullMarked
+public final class TableModel {
+    private final TableSpec spec;
+    /** The visible cells of each row */
+    private final List<@Nullable String[]> rows = new ArrayList<>();
+    /** Widths of the cells in each visible column */
+    private final List<WidthCounts> colWidths = new ArrayList<>();
+    /** Number of visible cells in each row */
+    private final WidthCounts rowLengths = new WidthCounts();
+
+    TableModel(TableSpec spec) {
+        this.spec = spec;
+    }
+
+    /** Returns the number of rows in the table */
+    public int size() {
+        return rows.size();
+    }
+
+    /** Appends the given row to the end of the table */
+    public void addRow(@Nullable Object... row) {
+        addRow(rows.size(), row);
+    }
+
+    /** Inserts the given row at the given index, shifting the row at that index and any subsequent rows down */
+    public void addRow(int index, @Nullable Object... row) {
+        if (index < 0 || index > rows.size())
+            throw new IndexOutOfBoundsException("Row index " + index + " is out of bounds for table with " + rows.size() + " rows");
+
+        @Nullable CharSequence[] visible = AsciiTable.toCells(spec, new Object[][]{row})[0];
+        @Nullable String[] cells = new String[visible.length];
+        for (int col = 0; col < cells.length; col++) cells[col] = visible[col] == null ? null : visible[col].toString();
+        rows.add(index, cells);
+        rowLengths.add(cells.length);
+        while (colWidths.size() < cells.length) colWidths.add(new WidthCounts());
+        for (int col = 0; col < cells.length; col++)
+            colWidths.get(col).add(width(col, cells[col]));
+    }
+
+    /** Removes the row at the given index, shifting any subsequent rows up */
+    public void removeRow(int index) {
+        @Nullable String[] cells = rows.remove(index);
+        rowLengths.remove(cells.length);
+        for (int col = 0; col < cells.length; col++)
+            colWidths.get(col).remove(width(col, cells[col]));
+    }
+
+    /**
+     * Sets the value of a single cell. The column index includes the invisible columns, setting the value of an
+     * invisible column has no effect. The row is extended with empty cells if it has fewer columns.
+     */
+    public void setCell(int row, int column, @Nullable Object value) {
+        if (column < 0)
+            throw new IndexOutOfBoundsException("Column index " + column + " is negative");
+        if (column < spec.rawColumns.length && !spec.rawColumns[column].isVisible()) return;
+
+        int col = column - spec.numInvisible[Math.min(column, spec.numInvisible.length - 1)];
+        @Nullable String[] cells = rows.get(row);
+        if (col >= cells.length) {
+            rowLengths.remove(cells.length);
+            cells = Arrays.copyOf(cells, col + 1);
+            rows.set(row, cells);
+            rowLengths.add(cells.length);
+            while (colWidths.size() < cells.length) colWidths.add(new WidthCounts());
+        } else colWidths.get(col).remove(width(col, cells[col]));
+
+        cells[col] = value == null ? null : value.toString();
+        colWidths.get(col).add(width(col, cells[col]));
+    }
+
+    /** Returns the value of a cell, the column index includes the invisible columns */
+    public @Nullable String getCell(int row, int column) {
+        if (column < spec.rawColumns.length && !spec.rawColumns[column].isVisible()) return null;
+
+        int col = column - spec.numInvisible[Math.min(column, spec.numInvisible.length - 1)];
+        @Nullable String[] cells = rows.get(row);
+        return col < cells.length ? cells[col] : null;
+    }
+
+    /** Render the table and return it as String */
+    public String asString() {
+        return RenderContext.asString(writer());
+    }
+
+    /** Write the table to the given output stream. The output stream must be closed by the caller. */
+    public void writeTo(OutputStream os) {
+        RenderContext.writeTo(writer(), os);
+    }
+
+    private TableWriter writer() {
+        int numVisibleRawColumns = spec.rawColumns.length - (spec.rawColumns.length == 0 ? 0 : spec.numInvisible[spec.numInvisible.length - 1]);
+        TableSpec spec = this.spec.withNumColumns(this.spec.rawColumns.length + Math.max(0, rowLengths.max() - numVisibleRawColumns));
+        @Nullable CharSequence[][] data = rows.toArray(new String[0][]);
+
+        int[] widths;
+        if (spec.hasDecimalAlign) {
+            data = AsciiTable.alignDecimals(spec.columns, data);
+            widths = AsciiTable.getColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, data, spec.borderWidth, spec.maxTableWidth);
+        } else {
+            widths = new int[spec.columns.length];
+            for (int col = 0; col < Math.min(colWidths.size(), widths.length); col++) widths[col] = colWidths.get(col).max();
+            AsciiTable.getContentColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, widths);
+            AsciiTable.fitColWidths(widths, spec.minWidths, spec.borderWidth, spec.maxTableWidth);
+        }
+
+        return new TableWriter(spec, data, widths, null);
+    }
+
+    /** Returns the length of the longest line of the cell, up to the longest line that fits in the column */
+    private int width(int col, @Nullable String cell) {
+        return cell == null ? 0 : LineUtils.maxLineLength(cell, spec.maxContentLength(col));
+    }
+
+    /** Number of occurrences of each width, and the largest width that occurs */
+    static class WidthCounts {
+        private int[] counts = new int[16];
+        private int max = 0;
+
+        void add(int width) {
+            if (width >= counts.length) counts = Arrays.copyOf(counts, Math.max(width + 1, 2 * counts.length));
+            counts[width]++;
+            max = Math.max(max, width);
+        }
+
+        void remove(int width) {
+            counts[width]--;
+            while (max > 0 && counts[max] == 0) max--;
+        }
+
+        /** Returns the largest width that occurs, or 0 if none do */
+        int max() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the rows of a table from any number of producer threads, none of which ever waits for another. The rows
+ * are either in the order they were added, see {@link #add(Object...)}, or in the order of sequence numbers given
+ * by the producers, see {@link #addSequenced(long, Object...)}, a sink uses one or the other.
+ * <p>
+ * A sink created with {@link TableSpec#sink()} keeps the rows in a buffer per producer thread, each with its own
+ * widths of the columns, and merges them when the table is rendered with {@link #asString()} or
+ * {@link #writeTo(OutputStream)}. The rows added by a producer are only guaranteed to be rendered if the add
+ * happens-before the render, e.g. because the producer threads have been joined.
+ * <p>
+ * A sink created with {@link TableSpec#sink(OutputStream)} writes the rows as they arrive, see
+ * {@link StreamingTable}. Whichever producer finds the table idle writes all the rows that are waiting, the others
+ * return immediately. Sequenced rows start at sequence number 0 and are held back until all the rows before them
+ * have been written, the rows that are still held back by a gap in the sequence numbers are written in order by
+ * {@link #close()}.
+ */
+@NullMarked
+public final class TableSink implements Closeable {
+    private static final int UNSET = 0, ARRIVAL = 1, SEQUENCED = 2;
+
+    private final TableSpec spec;
+    private final AtomicInteger order = new AtomicInteger(UNSET);
+    /** Sequence number of the next row added with {@link #add(Object...)} */
+    private final AtomicLong arrivals = new AtomicLong();
+
+    /**
+     * A token per thread that identifies it as a producer. The stripes are keyed by the token rather than by the
+     * thread, so that a sink does not keep the threads that added rows to it reachable.
+     */
+    private static final ThreadLocal<Object> PRODUCER = ThreadLocal.withInitial(Object::new);
+
+    /** The rows added by each producer thread, owned by the sink so that they do not outlive it */
+    private final ConcurrentMap<Object, Stripe> stripes = new ConcurrentHashMap<>();
+
+    private final @Nullable StreamingTable stream;
+    private final Queue<Row> incoming = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** Sequenced rows that have arrived before some row before them, only accessed while holding the write lock */
+    private final Map<Long, @Nullable CharSequence[]> heldBack = new HashMap<>();
+    private long nextSequence = 0;
+
+    TableSink(TableSpec spec, @Nullable OutputStream os) {
+        this.spec = spec;
+        this.stream = os == null ? null : new StreamingTable(spec, os, new Object[0][]);
+    }
+
+    /** Adds the given row, the rows are in the order they were added */
+    public void add(@Nullable Object... row) {
+        setOrder(ARRIVAL);
+        if (stream != null) write(new Row(0, toCells(row)));
+        else stripe().add(arrivals.getAndIncrement(), toCells(row));
+    }
+
+    /** Adds the given row, the rows are in the order of their sequence numbers */
+    public void addSequenced(long sequence, @Nullable Object... row) {
+        setOrder(SEQUENCED);
+        if (stream != null) write(new Row(sequence, toCells(row)));
+        else stripe().add(sequence, toCells(row));
+    }
+
+    /** Render the table and return it as String */
+    public String asString() {
+        return RenderContext.asString(writer());
+    }
+
+    /** Write the table to the given output stream. The output stream must be closed by the caller. */
+    public void writeTo(OutputStream os) {
+        RenderContext.writeTo(writer(), os);
+    }
+
+    /**
+     * Writes the rows that are still waiting, the footer and the bottom border of a streaming sink, no rows may be
+     * added afterwards. Does nothing for a sink that renders at the end.
+     */
+    @Override
+    public void close() {
+        if (stream == null) return;
+
+        writeLock.lock();
+        try {
+            drain();
+            List<Long> sequences = new ArrayList<>(heldBack.keySet());
+            sequences.sort(null);
+            for (long sequence : sequences) stream.appendCells(heldBack.remove(sequence));
+            stream.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void setOrder(int order) {
+        if (this.order.get() != order && !this.order.compareAndSet(UNSET, order))
+            throw new IllegalStateException("Cannot both add rows in arrival order and with sequence numbers");
+    }
+
+    /** Converts the row to the visible cells, which is done by the producer, so that it is done in parallel */
+    private @Nullable CharSequence[] toCells(@Nullable Object[] row) {
+        return AsciiTable.toCells(spec, new Object[][]{row})[0];
+    }
+
+    /** Returns the stripe of the current thread, which is only looked up without locking once it exists */
+    private Stripe stripe() {
+        Object producer = PRODUCER.get();
+        Stripe stripe = stripes.get(producer);
+        return stripe != null ? stripe : stripes.computeIfAbsent(producer, p -> new Stripe(spec));
+    }
+
+    private void write(Row row) {
+        incoming.add(row);
+        // If another producer is writing, it will write this row as well, since it drains the queue again after
+        // releasing the lock if the queue is not empty
+        while (!incoming.isEmpty() && writeLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /** Writes the incoming rows that are next in order, must hold the write lock */
+    private void drain() {
+        StreamingTable stream = this.stream;
+        for (Row row; (row = incoming.poll()) != null; ) {
+            if (order.get() == ARRIVAL || row.sequence < nextSequence) {
+                stream.appendCells(row.cells);
+                continue;
+            }
+
+            heldBack.put(row.sequence, row.cells);
+            for (@Nullable CharSequence[] next; (next = heldBack.remove(nextSequence)) != null; nextSequence++)
+                stream.appendCells(next);
+        }
+    }
+
+    private synchronized TableWriter writer() {
+        if (stream != null)
+            throw new IllegalStateException("The rows of a streaming sink are written as they are added");
+
+        // The stripes are copied, as their producers may still be adding to them
+        List<Stripe> stripes = new ArrayList<>(this.stripes.size());
+        for (Stripe stripe : this.stripes.values()) stripes.add(stripe.sortedCopy());
+        int numRows = 0, maxRowLength = 0;
+        int[] maxLineLengths = new int[0];
+        for (Stripe stripe : stripes) {
+            numRows += stripe.size;
+            maxRowLength = Math.max(maxRowLength, stripe.maxRowLength);
+            if (stripe.maxLineLengths.length > maxLineLengths.length) maxLineLengths = Arrays.copyOf(maxLineLengths, stripe.maxLineLengths.length);
+            for (int col = 0; col < stripe.maxLineLengths.length; col++)
+                maxLineLengths[col] = Math.max(maxLineLengths[col], stripe.maxLineLengths[col]);
+        }
+
+        // Each stripe is sorted, merge them by always taking the row with the lowest sequence number among the stripes
+        @Nullable CharSequence[][] data = new CharSequence[numRows][];
+        int[] merged = new int[stripes.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, stripes.size()),
+                (a, b) -> Long.compare(stripes.get(a).sequences[merged[a]], stripes.get(b).sequences[merged[b]]));
+        for (int i = 0; i < stripes.size(); i++) {
+            if (stripes.get(i).size > 0) heads.add(i);
+        }
+        for (int row = 0; !heads.isEmpty(); row++) {
+            int head = heads.poll();
+            data[row] = stripes.get(head).rows[merged[head]++];
+            if (merged[head] < stripes.get(head).size) heads.add(head);
+        }
+
+        int numVisibleRawColumns = spec.rawColumns.length - (spec.rawColumns.length == 0 ? 0 : spec.numInvisible[spec.numInvisible.length - 1]);
+        TableSpec spec = this.spec.withNumColumns(this.spec.rawColumns.length + Math.max(0, maxRowLength - numVisibleRawColumns));
+        int[] widths;
+        if (spec.hasDecimalAlign) {
+            data = AsciiTable.alignDecimals(spec.columns, data);
+            widths = AsciiTable.getColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, data, spec.borderWidth, spec.maxTableWidth);
+        } else {
+            widths = Arrays.copyOf(maxLineLengths, spec.columns.length);
+            AsciiTable.getContentColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, widths);
+            AsciiTable.fitColWidths(widths, spec.minWidths, spec.borderWidth, spec.maxTableWidth);
+        }
+        return new TableWriter(spec, data, widths, null);
+    }
+
+    /**
+     * The rows added by a single producer thread, and the widths of their columns, only modified by that thread. A
+     * row is counted by {@link #size} once its widths are included, so a copy never has rows wider than its widths.
+     */
+    private static final class Stripe {
+        private final TableSpec spec;
+        private long[] sequences = new long[16];
+        private @Nullable CharSequence[][] rows = new CharSequence[16][];
+        private int size = 0;
+        private boolean sorted = true;
+        private int[] maxLineLengths = new int[0];
+        private int maxRowLength = 0;
+
+        private Stripe(TableSpec spec) {
+            this.spec = spec;
+        }
+
+        void add(long sequence, @Nullable CharSequence[] cells) {
+            if (size == rows.length) {
+                sequences = Arrays.copyOf(sequences, 2 * size);
+                rows = Arrays.copyOf(rows, 2 * size);
+            }
+            sorted &= size == 0 || sequences[size - 1] <= sequence;
+            sequences[size] = sequence;
+            rows[size] = cells;
+
+            if (cells.length > maxLineLengths.length) maxLineLengths = Arrays.copyOf(maxLineLengths, cells.length);
+            maxRowLength = Math.max(maxRowLength, cells.length);
+            for (int col = 0; col < cells.length; col++) {
+                CharSequence cell = cells[col];
+                if (cell != null && cell.length() > maxLineLengths[col])
+                    maxLineLengths[col] = Math.max(maxLineLengths[col], LineUtils.maxLineLength(cell, spec.maxContentLength(col)));
+            }
+            size++;
+        }
+
+        /**
+         * Returns a copy of the rows added so far, sorted by their sequence numbers, this stripe is not modified. If
+         * the producer is adding rows while the copy is made, the rows that are not yet visible to the copying thread
+         * are left out of the copy, but are kept in this stripe.
+         */
+        Stripe sortedCopy() {
+            int size = this.size;
+            long[] sequences = this.sequences;
+            @Nullable CharSequence[][] rows = this.rows;
+            size = Math.min(size, Math.min(sequences.length, rows.length));
+
+            Stripe copy = new Stripe(spec);
+            copy.sequences = new long[size];
+            copy.rows = new CharSequence[size][];
+            for (int i = 0; i < size; i++) {
+                if (rows[i] == null) continue;
+                copy.sorted &= copy.size == 0 || copy.sequences[copy.size - 1] <= sequences[i];
+                copy.sequences[copy.size] = sequences[i];
+                copy.rows[copy.size++] = rows[i];
+            }
+            copy.maxLineLengths = maxLineLengths.clone();
+            copy.maxRowLength = maxRowLength;
+            copy.sort();
+            return copy;
+        }
+
+        /** Sorts the rows by their sequence numbers, if they were not added in order, only called on a copy */
+        private void sort() {
+            if (sorted) return;
+            Integer[] indices = new Integer[size];
+            for (int i = 0; i < size; i++) indices[i] = i;
+            long[] sequences = this.sequences;
+            Arrays.sort(indices, (a, b) -> Long.compare(sequences[a], sequences[b]));
+
+            long[] sortedSequences = new long[sequences.length];
+            @Nullable CharSequence[][] sortedRows = new CharSequence[rows.length][];
+            for (int i = 0; i < size; i++) {
+                sortedSequences[i] = sequences[indices[i]];
+                sortedRows[i] = rows[indices[i]];
+            }
+            this.sequences = sortedSequences;
+            this.rows = sortedRows;
+            this.sorted = true;
+        }
+    }
+
+    private static class Row {
+        private final long sequence;
+        private final @Nullable CharSequence[] cells;
+
+        private Row(long sequence, @Nullable CharSequence[] cells) {
+            this.sequence = sequence;
+            this.cells = cells;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Immutable specification of a table without its data: the columns, border and rendering options. Everything that
+ * can be derived from these, e.g. which columns are visible, their alignments and overflow behaviours, and the width
+ * taken up by the border, is computed once when the spec is created. A spec may therefore be created once, see
+ * {@link AsciiTableBuilder#spec()}, and then be used to render many tables, from any number of threads, without
+ * copying or synchronization.
+ */
+@NullMarked
+public final class TableSpec {
+    private static final int DEFAULT_MAX_WIDTH = new Column().getMaxWidth();
+
+    /** Copies of the columns given by the caller, so that they cannot be modified after the spec is created */
+    final Column[] rawColumns;
+    /** The columns given by the caller, only passed on to the {@link Styler} */
+    private final Column[] originalColumns;
+    final @Nullable Character[] border;
+    final String lineSeparator;
+    final @Nullable Styler styler;
+    final @Nullable Integer maxTableWidth;
+    final @Nullable CellCache cellCache;
+
+    /** Number of invisible columns among the first i + 1 raw columns */
+    final int[] numInvisible;
+    /**
+     * The visible columns, extended with default columns up to the number of columns this spec is for. These are the
+     * instances given by the caller, they are only passed on to the {@link Styler}.
+     */
+    final Column[] columns;
+    final int[] minWidths;
+    final int[] maxWidths;
+    final HorizontalAlign[] headerAligns;
+    final HorizontalAlign[] dataAligns;
+    final HorizontalAlign[] footerAligns;
+    final OverflowBehaviour[] overflows;
+    final @Nullable String[] header;
+    final @Nullable String[] footer;
+    final boolean hasHeader;
+    final boolean hasFooter;
+    final boolean hasDecimalAlign;
+    /** Number of characters taken up by the vertical borders of a row */
+    final int borderWidth;
+    private final int numColumns;
+
+    TableSpec(Column[] rawColumns, @Nullable Character[] border, String lineSeparator, @Nullable Styler styler,
+              @Nullable Integer maxTableWidth, @Nullable CellCache cellCache) {
+        this(copyOf(rawColumns), rawColumns.clone(), border.clone(), lineSeparator, styler, maxTableWidth, cellCache, rawColumns.length);
+    }
+
+    private TableSpec(Column[] rawColumns, Column[] originalColumns, @Nullable Character[] border, String lineSeparator, @Nullable Styler styler,
+                      @Nullable Integer maxTableWidth, @Nullable CellCache cellCache, int numColumns) {
+        if (border.length != AsciiTable.NO_BORDERS.length)
+            throw new IllegalArgumentException("Border characters array must be exactly " + AsciiTable.NO_BORDERS.length + " elements long");
+
+        this.rawColumns = rawColumns;
+        this.originalColumns = originalColumns;
+        this.border = border;
+        this.lineSeparator = lineSeparator;
+        this.styler = styler;
+        this.maxTableWidth = maxTableWidth;
+        this.cellCache = cellCache;
+        this.numColumns = numColumns;
+
+        this.numInvisible = new int[Math.max(1, rawColumns.length)];
+        int numVisible = numColumns;
+        for (int i = 0; i < rawColumns.length; i++) {
+            numInvisible[i] = (i == 0 ? 0 : numInvisible[i - 1]) + (rawColumns[i].isVisible() ? 0 : 1);
+            if (!rawColumns[i].isVisible()) numVisible--;
+        }
+
+        this.columns = new Column[numVisible];
+        this.minWidths = new int[numVisible];
+        this.maxWidths = new int[numVisible];
+        this.headerAligns = new HorizontalAlign[numVisible];
+        this.dataAligns = new HorizontalAlign[numVisible];
+        this.footerAligns = new HorizontalAlign[numVisible];
+        this.overflows = new OverflowBehaviour[numVisible];
+        this.header = new String[numVisible];
+        this.footer = new String[numVisible];
+        boolean hasHeader = false, hasFooter = false, hasDecimalAlign = false;
+        for (int i = 0, col = 0; i < numColumns; i++) {
+            Column column = i < rawColumns.length ? rawColumns[i] : new Column();
+            if (!column.isVisible()) continue;
+
+            columns[col] = i < rawColumns.length ? originalColumns[i] : column;
+            minWidths[col] = column.getMinWidth();
+            maxWidths[col] = column.getMaxWidth();
+            headerAligns[col] = column.getHeaderAlign();
+            dataAligns[col] = column.getDataAlign();
+            footerAligns[col] = column.getFooterAlign();
+            overflows[col] = column.getOverflowBehaviour();
+            header[col] = column.getHeader();
+            footer[col] = column.getFooter();
+            hasHeader |= header[col] != null;
+            hasFooter |= footer[col] != null;
+            hasDecimalAlign |= dataAligns[col] == HorizontalAlign.DECIMAL;
+            col++;
+        }
+        this.hasHeader = hasHeader;
+        this.hasFooter = hasFooter;
+        this.hasDecimalAlign = hasDecimalAlign;
+        this.borderWidth = AsciiTable.getBorderWidth(border, numVisible);
+    }
+
+    /**
+     * Returns the length of the longest line that fits in the given visible column, also for columns beyond the
+     * columns of this spec, which get the default max width
+     */
+    int maxContentLength(int col) {
+        return AsciiTable.maxContentLength(col < maxWidths.length ? maxWidths[col] : DEFAULT_MAX_WIDTH);
+    }
+
+    /** Returns the index among the visible columns of the given raw column, or -1 if the column is not visible */
+    int visibleIndex(int rawColumn) {
+        if (rawColumn < rawColumns.length && !rawColumns[rawColumn].isVisible()) return -1;
+        return rawColumn - numInvisible[Math.min(rawColumn, numInvisible.length - 1)];
+    }
+
+    /** Returns a spec for tables with at least the given number of columns, columns beyond the raw columns get the defaults */
+    TableSpec withNumColumns(int numColumns) {
+        if (numColumns <= rawColumns.length) return this;
+        return new TableSpec(rawColumns, originalColumns, border, lineSeparator, styler, maxTableWidth, cellCache, numColumns);
+    }
+
+    /**
+     * Returns a spec of the given raw columns, in the given order, without a max table width. The columns are the
+     * copies of this spec, so they are as they were when this spec was created, and indices beyond the raw columns
+     * get the defaults.
+     */
+    TableSpec selectColumns(int[] rawIndices) {
+        Column[] selected = new Column[rawIndices.length];
+        Column[] originals = new Column[rawIndices.length];
+        for (int i = 0; i < rawIndices.length; i++) {
+            boolean isRaw = rawIndices[i] < rawColumns.length;
+            selected[i] = isRaw ? rawColumns[rawIndices[i]] : new Column();
+            originals[i] = isRaw ? originalColumns[rawIndices[i]] : selected[i];
+        }
+        return new TableSpec(selected, originals, border, lineSeparator, styler, null, cellCache, selected.length);
+    }
+
+    /** Returns a copy of this spec with the given border */
+    TableSpec withBorder(@Nullable Character[] border) {
+        return new TableSpec(rawColumns, originalColumns, border.clone(), lineSeparator, styler, maxTableWidth, cellCache, numColumns);
+    }
+
+    /**
+     * Lays out the table with the given data, so that it can be written with any number of different borders without
+     * laying it out again, see {@link LaidOutTable}. The table is laid out with the border of this spec.
+     */
+    public LaidOutTable layout(@Nullable Object[][] data) {
+        return new LaidOutTable(this, data);
+    }
+
+    /** Returns a table with the given data that is written a window of columns at a time, see {@link ColumnWindowTable} */
+    public ColumnWindowTable columnWindows(@Nullable Object[][] data) {
+        return new ColumnWindowTable(this, data);
+    }
+
+    /** Returns an empty mutable table with this spec, see {@link TableModel} */
+    public TableModel model() {
+        return new TableModel(this);
+    }
+
+    /** Returns an empty append-only table with this spec that packs its cells into {@code byte[]} backed slabs, see {@link PackedTable} */
+    public PackedTable packed() {
+        return new PackedTable(this, false);
+    }
+
+    /** Same as {@link #packed()}, but the slabs are direct byte buffers, outside the heap */
+    public PackedTable packedOffHeap() {
+        return new PackedTable(this, true);
+    }
+
+    /** Returns a sink that collects rows from any number of threads and renders them at the end, see {@link TableSink} */
+    public TableSink sink() {
+        return new TableSink(this, null);
+    }
+
+    /**
+     * Returns a sink that writes rows from any number of threads to the given output stream as they are added, see
+     * {@link TableSink}. The column widths are fixed from the columns of this spec only, as with {@link #stream(OutputStream)}.
+     */
+    public TableSink sink(OutputStream os) {
+        return new TableSink(this, os);
+    }
+
+    /**
+     * Returns a table that writes rows to the given output stream as they are appended, see {@link StreamingTable}.
+     * The column widths are fixed from the columns of this spec only.
+     */
+    public StreamingTable stream(OutputStream os) {
+        return stream(os, new Object[0][]);
+    }
+
+    /**
+     * Same as {@link #stream(OutputStream)}, but the column widths also fit the given sample rows. The sample rows
+     * are only measured, they are not written.
+     */
+    public StreamingTable stream(OutputStream os, @Nullable Object[][] sample) {
+        return new StreamingTable(this, os, sample);
+    }
+
+    /** Render the table with the given data and return it as String */
+    public String asString(@Nullable Object[][] data) {
+        return RenderContext.asString(new TableWriter(this, data, null));
+    }
+
+    /** Write the table with the given data to the given output stream. The output stream must be closed by the caller. */
+    public void writeTo(@Nullable Object[][] data, OutputStream os) {
+        RenderContext.writeTo(new TableWriter(this, data, null), os);
+    }
+
+    /**
+     * Returns a renderer that writes the table with the given data into {@link java.nio.ByteBuffer}s, encoded with
+     * the given charset, a piece at a time.
+     */
+    public ResumableRenderer renderer(@Nullable Object[][] data, Charset charset) {
+        return new ResumableRenderer(new TableWriter(this, data, null), charset);
+    }
+
+    private static Column[] copyOf(Column[] columns) {
+        Column[] copy = new Column[columns.length];
+        for (int i = 0; i < columns.length; i++) copy[i] = new Column(columns[i]);
+        return copy;
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Writes a table in pieces: the head (top border and header), each of the data rows (including the separator
+ * line that follows it) and the tail (footer and bottom border). The column widths are computed when the writer is
+ * created, so the pieces may be written at different times, but they must be written in order.
+ */
+@NullMarked
+class TableWriter {
+    private final TableSpec spec;
+    private final @Nullable CharSequence[][] data;
+    private final int numRows;
+    private final int[] colWidths;
+    private final @Nullable RowCache rowCache;
+    private final @Nullable CharArrayWriter rowWriter;
+    /** Cells that have already been justified to the column widths, if null, the cells are justified as they are written */
+    private final LaidOutTable.@Nullable Cells cells;
+    private @Nullable RenderBudget budget;
+    /** Buffer that each data row is written to before it is written, if the output of this render is limited */
+    private @Nullable CharArrayWriter budgetedRow;
+    /** Set once a data row was dropped because the budget was used up, the remaining rows are then not written */
+    private @Nullable Truncation truncation;
+    /** Whether a line has been written since the last line separator */
+    private boolean insertNewline = false;
+
+    TableWriter(TableSpec spec, @Nullable Object[][] data, @Nullable RowCache rowCache) {
+        spec = spec.withNumColumns(AsciiTable.getNumColumns(spec.rawColumns, data));
+        @Nullable CharSequence[][] cells = AsciiTable.toCells(spec, data);
+        if (spec.hasDecimalAlign) cells = AsciiTable.alignDecimals(spec.columns, cells);
+
+        this.spec = spec;
+        this.data = cells;
+        this.numRows = cells.length;
+        this.colWidths = AsciiTable.getColWidths(spec.minWidths, spec.maxWidths, spec.header, spec.footer, cells, spec.borderWidth, spec.maxTableWidth);
+        this.rowCache = spec.styler == null ? rowCache : null;
+        this.rowWriter = this.rowCache == null ? null : new CharArrayWriter();
+        this.cells = null;
+    }
+
+    /**
+     * Writes a table whose column widths are already known, and optionally also the justified cells. The spec must
+     * already have the final number of columns.
+     */
+    TableWriter(TableSpec spec, @Nullable CharSequence[][] data, int[] colWidths, LaidOutTable.@Nullable Cells cells) {
+        this.spec = spec;
+        this.data = data;
+        this.numRows = data.length;
+        this.colWidths = colWidths;
+        this.rowCache = null;
+        this.rowWriter = null;
+        this.cells = cells;
+    }
+
+    /**
+     * Writes a table whose column widths are already known, and whose rows are returned by {@link #row(int)}, which
+     * must be overridden, as must {@link #hasRow(int)} if the number of rows is not known upfront, in which case
+     * the number of rows is -1. The spec must already have the final number of columns.
+     */
+    TableWriter(TableSpec spec, int numRows, int[] colWidths) {
+        this.spec = spec;
+        this.data = new CharSequence[0][];
+        this.numRows = numRows;
+        this.colWidths = colWidths;
+        this.rowCache = null;
+        this.rowWriter = null;
+        this.cells = null;
+    }
+
+    /**
+     * Returns a writer of a table whose rows were not all measured because the given budget stopped the render, its
+     * rows are all dropped, as the budget stops the render before the first of them is written.
+     */
+    static TableWriter stopped(TableSpec spec, int[] colWidths, RenderBudget budget) {
+        TableWriter writer = new TableWriter(spec, -1, colWidths) {
+            @Override
+            boolean hasRow(int row) {
+                return row == 0;
+            }
+        };
+        return writer.budget(budget);
+    }
+
+    /** Limits this render to the given budget, the rows that do not fit in it are replaced by a single line */
+    TableWriter budget(@Nullable RenderBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    int numRows() {
+        return numRows;
+    }
+
+    /**
+     * Returns whether the table has the given data row. Called with the index of each row before it is written, and
+     * with the index after it, so that the table can end once the rows run out.
+     */
+    boolean hasRow(int row) {
+        return row < numRows;
+    }
+
+    /** Returns the cells of the given data row, the returned array is only used until the next row is written */
+    @Nullable CharSequence[] row(int row) {
+        return data[row];
+    }
+
+    void writeTo(Writer osw) throws IOException {
+        writeHead(osw);
+        for (int i = 0; hasRow(i); i++) {
+            if (!writeRow(osw, i)) break;
+        }
+        writeTail(osw);
+    }
+
+    /** Writes the top border and the header */
+    void writeHead(Writer osw) throws IOException {
+        RenderBudget budget = this.budget;
+        if (budget == null || !budget.limitsOutput()) writeHeadLines(osw);
+        else {
+            writeHeadLines(budget.count(osw, false));
+            budget.commit();
+        }
+    }
+
+    private void writeHeadLines(Writer osw) throws IOException {
+        @Nullable Character[] border = spec.border;
+        Styler styler = spec.styler;
+        insertNewline = AsciiTable.writeLine(osw, colWidths, border[0], border[1], border[2], border[3]);
+
+        if (spec.hasHeader) {
+            if (insertNewline) osw.write(spec.lineSeparator);
+            @Nullable BiFunction<Integer, List<String>, List<String>> headerStyler = styler == null ? null : (col, rows) -> styler.styleHeader(spec.columns[col], col, rows);
+            if (cells != null) AsciiTable.writeJustifiedCells(osw, colWidths, cells.header, border[4], border[5], border[6], spec.lineSeparator, headerStyler);
+            else AsciiTable.writeData(osw, colWidths, spec.overflows, spec.headerAligns, spec.header, border[4], border[5], border[6], spec.lineSeparator,
+                    headerStyler, spec.cellCache);
+            osw.write(spec.lineSeparator);
+            insertNewline = AsciiTable.writeLine(osw, colWidths, border[7], border[8], border[9], border[10]);
+        }
+
+        if (rowCache != null) rowCache.beginRender(colWidths, spec.dataAligns, spec.overflows, border, spec.lineSeparator);
+    }
+
+    /**
+     * Writes the given data row, and the separator line after it unless it is the last row. Returns false, and
+     * writes nothing, if the budget of this render is used up, then this and the remaining rows are dropped.
+     */
+    boolean writeRow(Writer osw, int row) throws IOException {
+        if (truncation != null) return false;
+        RenderBudget budget = this.budget;
+        if (budget == null) {
+            writeRowLines(osw, row);
+            return true;
+        }
+
+        Truncation.@Nullable Reason reason = budget.checkRow();
+        if (reason == null && !budget.limitsOutput()) {
+            writeRowLines(osw, row);
+            return true;
+        }
+        if (reason == null) {
+            CharArrayWriter buffer = budgetedRow != null ? budgetedRow : (budgetedRow = new CharArrayWriter());
+            buffer.reset();
+            boolean insertNewline = this.insertNewline;
+            try {
+                writeRowLines(budget.count(buffer, true), row);
+                budget.commit();
+                buffer.writeTo(osw);
+                return true;
+            } catch (RenderBudget.Exceeded e) {
+                this.insertNewline = insertNewline;
+                reason = e.reason;
+            }
+        }
+        truncation = budget.truncate(reason, row, numRows);
+        return false;
+    }
+
+    private void writeRowLines(Writer osw, int row) throws IOException {
+        @Nullable Character[] border = spec.border;
+        Styler styler = spec.styler;
+        if (insertNewline) osw.write(spec.lineSeparator);
+        @Nullable CharSequence[] rowCells = row(row);
+        @Nullable List<@Nullable String> cacheKey = rowCache == null ? null : cacheKey(rowCells);
+        if (rowCache != null && cacheKey != null) {
+            String rendered = rowCache.get(cacheKey);
+            if (rendered == null) {
+                rowWriter.reset();
+                AsciiTable.writeData(rowWriter, colWidths, spec.overflows, spec.dataAligns, rowCells, border[11], border[12], border[13], spec.lineSeparator, null, spec.cellCache);
+                rendered = rowWriter.toString();
+                rowCache.put(cacheKey, rendered);
+            }
+            osw.write(rendered);
+        } else {
+            @Nullable BiFunction<Integer, List<String>, List<String>> cellStyler = styler == null ? null : (col, rows) -> styler.styleCell(spec.columns[col], row, col, rows);
+            if (cells != null) AsciiTable.writeJustifiedCells(osw, colWidths, cells.rows.get(row), border[11], border[12], border[13], spec.lineSeparator, cellStyler);
+            else AsciiTable.writeData(osw, colWidths, spec.overflows, spec.dataAligns, rowCells, border[11], border[12], border[13], spec.lineSeparator,
+                    cellStyler, spec.cellCache);
+        }
+        if (hasRow(row + 1)) {
+            osw.write(spec.lineSeparator);
+            insertNewline = AsciiTable.writeLine(osw, colWidths, border[14], border[15], border[16], border[17]);
+        }
+    }
+
+    /** Writes the footer and the bottom border */
+    void writeTail(Writer osw) throws IOException {
+        @Nullable Character[] border = spec.border;
+        Styler styler = spec.styler;
+        if (rowCache != null) rowCache.endRender();
+
+        Truncation truncation = this.truncation;
+        if (truncation != null) {
+            // The line that replaces the dropped rows spans all the columns, and wraps if the table is too narrow for it
+            int width = 0;
+            for (int colWidth : colWidths) width += colWidth;
+            if (border[12] != null) width += Math.max(0, colWidths.length - 1);
+            List<CharSequence> lines = AsciiTable.splitCell(truncation.toString(), Math.max(1, width - 2 * AsciiTable.PADDING), OverflowBehaviour.NEWLINE);
+            for (CharSequence line : lines) {
+                if (insertNewline) osw.write(spec.lineSeparator);
+                if (border[11] != null) osw.append(border[11]);
+                AsciiTable.writeJustified(osw, line, HorizontalAlign.LEFT, width, AsciiTable.PADDING);
+                if (border[13] != null) osw.append(border[13]);
+                insertNewline = true;
+            }
+        }
+
+        if (spec.hasFooter) {
+            osw.write(spec.lineSeparator);
+            insertNewline = AsciiTable.writeLine(osw, colWidths, border[18], border[19], border[20], border[21]);
+            if (insertNewline) osw.write(spec.lineSeparator);
+            @Nullable BiFunction<Integer, List<String>, List<String>> footerStyler = styler == null ? null : (col, rows) -> styler.styleFooter(spec.columns[col], col, rows);
+            if (cells != null) AsciiTable.writeJustifiedCells(osw, colWidths, cells.footer, border[22], border[23], border[24], spec.lineSeparator, footerStyler);
+            else AsciiTable.writeData(osw, colWidths, spec.overflows, spec.footerAligns, spec.footer, border[22], border[23], border[24], spec.lineSeparator,
+                    footerStyler, spec.cellCache);
+        }
+
+        if (border[26] != null) osw.write(spec.lineSeparator);
+        AsciiTable.writeLine(osw, colWidths, border[25], border[26], border[27], border[28]);
+    }
+
+    /** Returns the row cache key of the given row, or null if the row has cells that are not strings, which may be mutable */
+    private static @Nullable List<@Nullable String> cacheKey(@Nullable CharSequence[] row) {
+        @Nullable String[] key = new String[row.length];
+        for (int col = 0; col < row.length; col++) {
+            if (row[col] != null && !(row[col] instanceof String)) return null;
+            key[col] = (String) row[col];
+        }
+        return Arrays.asList(key);
+    }
+}
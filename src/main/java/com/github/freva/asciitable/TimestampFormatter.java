@@ -0,0 +1,146 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Formats timestamps with a pattern that is compiled once, and memoizes the formatted text of the most recent
+ * second. Consecutive timestamps within the same second, which is common in log-like tables, are then only a
+ * comparison and a copy, plus writing the fraction digits, see {@link #withFractionDigits(int)}.
+ * <p>
+ * Instances may be shared between threads, but the memoization works best with one formatter per column, see
+ * {@link Column#withInstant(java.util.function.Function, TimestampFormatter)}.
+ */
+@NullMarked
+public class TimestampFormatter {
+    private static final int[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000};
+
+    private final String pattern;
+    private final ZoneId zone;
+    /** Formatters of the pattern up to and including the seconds if there are fraction digits, else of the whole pattern */
+    private final DateTimeFormatter instantFormatter;
+    private final DateTimeFormatter localFormatter;
+    /** Formatters of the rest of the pattern, after the fraction digits, null if there is nothing after them */
+    private final @Nullable DateTimeFormatter instantSuffixFormatter;
+    private final @Nullable DateTimeFormatter localSuffixFormatter;
+    private final int fractionDigits;
+    private volatile @Nullable Memo memo;
+
+    private TimestampFormatter(String pattern, ZoneId zone, int fractionDigits) {
+        int split = fractionDigits == 0 ? pattern.length() : secondsEnd(pattern);
+        this.pattern = pattern;
+        this.zone = zone;
+        this.localFormatter = DateTimeFormatter.ofPattern(pattern.substring(0, split));
+        this.instantFormatter = localFormatter.withZone(zone);
+        this.localSuffixFormatter = split == pattern.length() ? null : DateTimeFormatter.ofPattern(pattern.substring(split));
+        this.instantSuffixFormatter = localSuffixFormatter == null ? null : localSuffixFormatter.withZone(zone);
+        this.fractionDigits = fractionDigits;
+    }
+
+    /**
+     * @param pattern {@link DateTimeFormatter} pattern with at most second precision, e.g. "yyyy-MM-dd HH:mm:ss",
+     *                use {@link #withFractionDigits(int)} for the fraction of the second
+     * @param zone Time zone to format {@link Instant}s and epoch millis in
+     */
+    public static TimestampFormatter ofPattern(String pattern, ZoneId zone) {
+        validatePattern(pattern);
+        return new TimestampFormatter(pattern, zone, 0);
+    }
+
+    /** Same as {@link #ofPattern(String, ZoneId)} in UTC */
+    public static TimestampFormatter ofPattern(String pattern) {
+        return ofPattern(pattern, ZoneOffset.UTC);
+    }
+
+    /**
+     * Returns a copy of this formatter that writes '.' and the given number of digits of the fraction of the second
+     * after the seconds, e.g. "HH:mm:ssXXX" gives "13:00:00.123+01:00". The pattern must have a seconds field.
+     */
+    public TimestampFormatter withFractionDigits(int fractionDigits) {
+        if (fractionDigits < 0 || fractionDigits > 9)
+            throw new IllegalArgumentException("Number of fraction digits must be between 0 and 9, was " + fractionDigits);
+        return new TimestampFormatter(pattern, zone, fractionDigits);
+    }
+
+    public String format(Instant instant) {
+        return format(instant.getEpochSecond(), instant.getNano(), false);
+    }
+
+    public String formatEpochMillis(long epochMillis) {
+        return format(Math.floorDiv(epochMillis, 1000L), (int) Math.floorMod(epochMillis, 1000L) * 1_000_000, false);
+    }
+
+    public String format(LocalDateTime localDateTime) {
+        return format(localDateTime.toEpochSecond(ZoneOffset.UTC), localDateTime.getNano(), true);
+    }
+
+    private String format(long epochSecond, int nanos, boolean local) {
+        Memo memo = this.memo;
+        if (memo == null || memo.epochSecond != epochSecond || memo.local != local) {
+            LocalDateTime localDateTime = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+            Instant instant = Instant.ofEpochSecond(epochSecond);
+            String text = local ? localFormatter.format(localDateTime) : instantFormatter.format(instant);
+            String suffix = localSuffixFormatter == null || instantSuffixFormatter == null ? "" :
+                    local ? localSuffixFormatter.format(localDateTime) : instantSuffixFormatter.format(instant);
+            memo = new Memo(epochSecond, local, text, suffix);
+            this.memo = memo;
+        }
+        if (fractionDigits == 0) return memo.text;
+
+        int length = memo.text.length(), end = length + 1 + fractionDigits;
+        char[] result = new char[end + memo.suffix.length()];
+        memo.text.getChars(0, length, result, 0);
+        result[length] = '.';
+        int fraction = nanos / POWERS_OF_TEN[9 - fractionDigits];
+        for (int i = end - 1; i > length; i--, fraction /= 10)
+            result[i] = (char) ('0' + fraction % 10);
+        memo.suffix.getChars(0, memo.suffix.length(), result, end);
+        return new String(result);
+    }
+
+    /** Fractions of the second would defeat the memoization, so they must be added with {@link #withFractionDigits(int)} */
+    private static void validatePattern(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') quoted = !quoted;
+            else if (!quoted && (c == 'S' || c == 'n' || c == 'N' || c == 'A'))
+                throw new IllegalArgumentException("Pattern '" + pattern + "' has sub-second precision, use withFractionDigits() instead");
+        }
+    }
+
+    /** Returns the index in the pattern after its last seconds field, which the fraction digits are written after */
+    private static int secondsEnd(String pattern) {
+        boolean quoted = false;
+        int end = -1;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') quoted = !quoted;
+            else if (!quoted && c == 's') end = i + 1;
+        }
+        if (end < 0)
+            throw new IllegalArgumentException("Pattern '" + pattern + "' has no seconds field to write the fraction digits after");
+        return end;
+    }
+
+    private static class Memo {
+        private final long epochSecond;
+        private final boolean local;
+        /** The formatted text up to the fraction digits, or all of it if there are none, and the text after them */
+        private final String text;
+        private final String suffix;
+
+        private Memo(long epochSecond, boolean local, String text, String suffix) {
+            this.epochSecond = epochSecond;
+            this.local = local;
+            this.text = text;
+            this.suffix = suffix;
+        }
+    }
+}
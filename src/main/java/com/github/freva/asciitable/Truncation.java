@@ -0,0 +1,45 @@
+package com.github.freva.asciitable;
+
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Describes a table whose rendering was stopped by a budget set on the builder, e.g.
+ * {@link AsciiTableBuilder#maxOutputChars(long)}, see {@link AsciiTableBuilder#onTruncation}. The rows before the
+ * budget was hit were written in full, the rest were dropped.
+ */
+@NullMarked
+public final class Truncation {
+    public enum Reason { RENDER_TIME, OUTPUT_CHARS, OUTPUT_BYTES, OUTPUT_LINES, INTERRUPTED }
+
+    private final Reason reason;
+    private final int rowsWritten;
+    private final int rowsDropped;
+    private final String limit;
+
+    Truncation(Reason reason, int rowsWritten, int rowsDropped, String limit) {
+        this.reason = reason;
+        this.rowsWritten = rowsWritten;
+        this.rowsDropped = rowsDropped;
+        this.limit = limit;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /** Returns the number of data rows that were written */
+    public int getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /** Returns the number of data rows that were dropped, or -1 if the number of rows is not known, e.g. for a result set */
+    public int getRowsDropped() {
+        return rowsDropped;
+    }
+
+    /** Returns the text of the line that replaces the dropped rows, e.g. "… 120 more rows, output limit of 4096 chars reached" */
+    @Override
+    public String toString() {
+        return "… " + (rowsDropped < 0 ? "more rows" : rowsDropped == 1 ? "1 more row" : rowsDropped + " more rows") + ", " + limit;
+    }
+}
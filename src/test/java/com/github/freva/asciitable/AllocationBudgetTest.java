@@ -0,0 +1,114 @@
+package com.github.freva.asciitable;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Allocation budgets, in bytes per rendered data row, for common ways of rendering a table. A change that makes
+ * rendering allocate considerably more than before fails these tests, if the increase is intended, raise the budget.
+ * The budgets have some headroom, since the allocations vary a little between JVMs.
+ * <p>
+ * The budgets were calibrated on JDK 17, where strings of Latin-1 chars take one byte per char. Before JDK 9, strings
+ * take two bytes per char, so the tests are skipped there.
+ */
+public class AllocationBudgetTest {
+    private static final int NUM_ROWS = 200;
+    private static final int WARMUP_RENDERS = 200;
+    private static final int MEASURED_RENDERS = 50;
+    private static final String[] HEADER = {"Id", "Name", "Description", "Amount"};
+    private static final Object[][] DATA = new Object[NUM_ROWS][];
+    static {
+        for (int i = 0; i < NUM_ROWS; i++) {
+            DATA[i] = new Object[]{i, "Name " + i, "A somewhat longer description of row number " + i + ", that is wider than 30 chars",
+                    i * 1234.5};
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+
+    @BeforeAll
+    public static void checkSupported() {
+        assumeTrue(!System.getProperty("java.specification.version").startsWith("1."), "Budgets are calibrated for compact strings, which require JDK 9");
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Allocation measurement is not supported by this JVM");
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadMXBean.isThreadAllocatedMemorySupported(), "Allocation measurement is not supported by this JVM");
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void basicAscii() {
+        // Every cell fits on a single line, so no row needs to be split into lines
+        assertBudget(600, () -> AsciiTable.builder().header(HEADER).data(DATA).asString());
+    }
+
+    @Test
+    public void noBorders() {
+        assertBudget(600, () -> AsciiTable.builder().border(AsciiTable.NO_BORDERS).header(HEADER).data(DATA).asString());
+    }
+
+    @Test
+    public void newlineWrapping() {
+        assertBudget(4_000, () -> AsciiTable.builder().data(columns(OverflowBehaviour.NEWLINE), DATA).asString());
+    }
+
+    @Test
+    public void truncatingOverflowBehaviours() {
+        for (OverflowBehaviour overflow : Arrays.asList(OverflowBehaviour.CLIP_LEFT, OverflowBehaviour.CLIP_RIGHT,
+                OverflowBehaviour.ELLIPSIS_LEFT, OverflowBehaviour.ELLIPSIS_RIGHT, OverflowBehaviour.ELLIPSIS_CENTER))
+            assertBudget(3_000, () -> AsciiTable.builder().data(columns(overflow), DATA).asString());
+    }
+
+    @Test
+    public void truncatingLargeCells() {
+        String payload = "{\n  \"payload\": \"" + String.join("", Collections.nCopies(16 << 10, "x")) + "\"\n}";
+        Object[][] data = new Object[NUM_ROWS][];
+        for (int i = 0; i < NUM_ROWS; i++) data[i] = new Object[]{i, "Name " + i, payload, i * 1234.5};
+
+        for (OverflowBehaviour overflow : Arrays.asList(OverflowBehaviour.CLIP_LEFT, OverflowBehaviour.CLIP_RIGHT,
+                OverflowBehaviour.ELLIPSIS_LEFT, OverflowBehaviour.ELLIPSIS_RIGHT, OverflowBehaviour.ELLIPSIS_CENTER))
+            assertBudget(3_000, () -> AsciiTable.builder().data(columns(overflow), data).asString());
+    }
+
+    @Test
+    public void styler() {
+        Styler styler = new Styler() {
+            @Override
+            public List<String> styleCell(Column column, int row, int col, List<String> data) {
+                return data;
+            }
+        };
+        assertBudget(4_200, () -> AsciiTable.builder().styler(styler).header(HEADER).data(DATA).asString());
+    }
+
+    @Test
+    public void maxTableWidth() {
+        assertBudget(4_500, () -> AsciiTable.builder().maxTableWidth(60).header(HEADER).data(DATA).asString());
+    }
+
+    private static Column[] columns(OverflowBehaviour overflow) {
+        return new Column[]{new Column().header(HEADER[0]), new Column().header(HEADER[1]),
+                new Column().header(HEADER[2]).maxWidth(30, overflow), new Column().header(HEADER[3])};
+    }
+
+    private static void assertBudget(long bytesPerRow, Supplier<String> render) {
+        for (int i = 0; i < WARMUP_RENDERS; i++) render.get();
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_RENDERS; i++) render.get();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        long actual = allocated / MEASURED_RENDERS / NUM_ROWS;
+        assertTrue(actual <= bytesPerRow, "Allocated " + actual + " bytes per row, budget is " + bytesPerRow);
+    }
+}
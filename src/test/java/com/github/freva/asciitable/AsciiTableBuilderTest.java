@@ -2,6 +2,13 @@ package com.github.freva.asciitable;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class AsciiTableBuilderTest {
@@ -16,4 +23,38 @@ public class AsciiTableBuilderTest {
         assertThrows(IllegalArgumentException.class,
                 () -> AsciiTable.builder().footer("footer").data(new Column[0], new Object[0][0]).asString());
     }
+
+    @Test
+    public void specIsASnapshot() throws Exception {
+        Column name = new Column().header("Name").dataAlign(HorizontalAlign.LEFT);
+        AsciiTableBuilder builder = AsciiTable.builder().border(AsciiTable.BASIC_ASCII_NO_DATA_SEPARATORS)
+                .data(new Column[]{name, new Column().header("Value")}, new Object[0][]);
+        TableSpec spec = builder.spec();
+        name.header("Changed").dataAlign(HorizontalAlign.RIGHT);
+        builder.border(AsciiTable.NO_BORDERS);
+
+        Object[][] data = {{"a", 1}, {"bb", 22, "extra"}};
+        String expected = String.join(System.lineSeparator(),
+                "+------+-------+-------+",
+                "| Name | Value |       |",
+                "+------+-------+-------+",
+                "| a    |     1 |       |",
+                "| bb   |    22 | extra |",
+                "+------+-------+-------+");
+        assertEquals(expected, spec.asString(data));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) results.add(executor.submit(() -> spec.asString(data)));
+            for (Future<String> result : results) assertEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void specValidatesBorder() {
+        assertThrows(IllegalArgumentException.class, () -> AsciiTable.builder().border(new Character[28]).spec());
+    }
 }
@@ -2,22 +2,43 @@ package com.github.freva.asciitable;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.github.freva.asciitable.HorizontalAlign.*;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AsciiTableTest {
     private static final List<Planet> planets = Arrays.asList(
@@ -758,6 +779,784 @@ public class AsciiTableTest {
         assertEquals(expected, AsciiTable.builder().data(colMaxW, data).border(AsciiTable.NO_BORDERS).maxTableWidth(30).asString());
     }
 
+    @Test
+    public void topKRows() {
+        String actual = AsciiTable.builder()
+                .data(planets, Arrays.asList(
+                        new Column().header("Name").with(planet -> planet.name),
+                        new Column().header("Mass").with(planet -> String.format(Locale.US, "%.02f", planet.mass))),
+                        Comparator.<Planet>comparingDouble(planet -> planet.mass).reversed(), 2)
+                .asString();
+
+        String expected = String.join(System.lineSeparator(),
+                "+-------+------+",
+                "| Name  | Mass |",
+                "+-------+------+",
+                "| Earth | 1.00 |",
+                "+-------+------+",
+                "| Venus | 0.82 |",
+                "+-------+------+");
+        assertEquals(expected, actual);
+
+        List<ColumnData<Integer>> columns = Collections.singletonList(new Column().with(i -> Integer.toString(i)));
+        Comparator<Integer> byLastDigitThenValue = Comparator.<Integer>comparingInt(i -> i % 10).thenComparing(Comparator.reverseOrder());
+        assertEquals(AsciiTable.getTable(new Object[][]{{"9990"}, {"9980"}, {"9970"}}),
+                AsciiTable.builder().data(() -> IntStream.range(0, 10_000).iterator(), columns, byLastDigitThenValue, 3).asString());
+        assertEquals(AsciiTable.getTable(Collections.emptyList(), columns),
+                AsciiTable.builder().data(Arrays.asList(1, 2, 3), columns, byLastDigitThenValue, 0).asString());
+        assertThrows(IllegalArgumentException.class, () -> AsciiTable.builder().data(Arrays.asList(1, 2, 3), columns, byLastDigitThenValue, -1));
+    }
+
+    @Test
+    public void aggregateFooters() {
+        String actual = AsciiTable.getTable(AsciiTable.BASIC_ASCII_NO_OUTSIDE_BORDER, planets, Arrays.asList(
+                new Column().with(planet -> Integer.toString(planet.num), Aggregates.count()),
+                new Column().header("Name").footer("Average").with(planet -> planet.name),
+                new Column().header("Diameter").with(planet -> String.format(Locale.US, "%.03f", planet.diameter),
+                        Aggregates.average(planet -> planet.diameter, avg -> String.format(Locale.US, "%.03f", avg))),
+                new Column().header("Mass").with(planet -> String.format(Locale.US, "%.02f", planet.mass),
+                        Aggregates.average(planet -> planet.mass, avg -> String.format(Locale.US, "%.02f", avg))),
+                new Column().header("Atmosphere").with(planet -> planet.atmosphere)));
+
+        String expected = String.join(System.lineSeparator(),
+                "   | Name    | Diameter | Mass | Atmosphere                      ",
+                "---+---------+----------+------+---------------------------------",
+                " 1 | Mercury |    0.382 | 0.06 |                         minimal ",
+                "---+---------+----------+------+---------------------------------",
+                " 2 |   Venus |    0.949 | 0.82 |        Carbon dioxide, Nitrogen ",
+                "---+---------+----------+------+---------------------------------",
+                " 3 |   Earth |    1.000 | 1.00 |         Nitrogen, Oxygen, Argon ",
+                "---+---------+----------+------+---------------------------------",
+                " 4 |    Mars |    0.532 | 0.11 | Carbon dioxide, Nitrogen, Argon ",
+                "---+---------+----------+------+---------------------------------",
+                " 4 | Average | 0.716    | 0.50 |                                 ");
+        assertEquals(expected, actual);
+
+        String minMaxSum = AsciiTable.getTable(planets, Arrays.asList(
+                new Column().footer("ignored").with(planet -> Integer.toString(planet.num), Aggregates.sum(planet -> planet.num)),
+                new Column().with(planet -> planet.name, Collectors.mapping(planet -> planet.name.substring(0, 1), Collectors.joining())),
+                new Column().with(planet -> Double.toString(planet.mass), Aggregates.min(planet -> planet.mass, Double::toString)),
+                new Column().with(planet -> Double.toString(planet.mass), Aggregates.max(planet -> planet.mass, Double::toString))));
+        assertEquals(String.join(System.lineSeparator(),
+                "+----+---------+------+------+",
+                "|  1 | Mercury | 0.06 | 0.06 |",
+                "+----+---------+------+------+",
+                "|  2 |   Venus | 0.82 | 0.82 |",
+                "+----+---------+------+------+",
+                "|  3 |   Earth |  1.0 |  1.0 |",
+                "+----+---------+------+------+",
+                "|  4 |    Mars | 0.11 | 0.11 |",
+                "+----+---------+------+------+",
+                "| 10 | MVEM    | 0.06 | 1.0  |",
+                "+----+---------+------+------+"), minMaxSum);
+    }
+
+    @Test
+    public void cellCache() {
+        String[][] data = {{"up", "eu-west-1", "Nullam vitae nisl vel turpis commodo ultrices."},
+                {"down", "eu-west-1", "Fusce hendrerit lobortis nibh a finibus."},
+                {"up", "us-east-1", "Nullam vitae nisl vel turpis commodo ultrices."},
+                {"up", "eu-west-1", null}};
+        CellCache cache = new CellCache(4);
+        for (OverflowBehaviour overflow : OverflowBehaviour.values()) {
+            Column[] columns = {new Column().header("Status").dataAlign(CENTER), new Column().header("Region"),
+                    new Column().header("Message").dataAlign(LEFT).maxWidth(20, overflow)};
+            assertEquals(AsciiTable.builder().data(columns, data).asString(),
+                    AsciiTable.builder().data(columns, data).cellCache(cache).asString());
+        }
+        assertEquals(4, cache.size());
+        assertEquals(OverflowBehaviour.values().length * 15, cache.getHits() + cache.getMisses());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        AsciiTable.builder().data(data).cellCache(cache).asString();
+        assertEquals(2, cache.getHits()); // "eu-west-1" in the 2nd row and "up" in the last row
+        assertEquals(10, cache.getMisses());
+
+        CellCache largeCache = new CellCache(100);
+        AsciiTable.builder().data(data).cellCache(largeCache).asString();
+        assertEquals(5, largeCache.getHits());
+        assertEquals(7, largeCache.getMisses());
+        assertThrows(IllegalArgumentException.class, () -> new CellCache(0));
+    }
+
+    @Test
+    public void rowCache() {
+        RowCache cache = new RowCache();
+        AsciiTableBuilder builder = AsciiTable.builder().header("Host", "Status").rowCache(cache);
+        String[][] data = {{"host1", "up"}, {"host2", "up"}, {"host3", "Line 1\nLine 2"}};
+        assertEquals(AsciiTable.getTable(new String[]{"Host", "Status"}, data), builder.data(data).asString());
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        data[1] = new String[]{"host2", "down"};
+        assertEquals(AsciiTable.getTable(new String[]{"Host", "Status"}, data), builder.data(data).asString());
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertEquals(3, cache.size());
+
+        // Wider column invalidates all the rows
+        data[0] = new String[]{"host1", "unknown"};
+        assertEquals(AsciiTable.getTable(new String[]{"Host", "Status"}, data), builder.data(data).asString());
+        assertEquals(2, cache.getHits());
+        assertEquals(7, cache.getMisses());
+
+        // Same data with different border is laid out again
+        assertEquals(AsciiTable.getTable(AsciiTable.FANCY_ASCII, new String[]{"Host", "Status"}, null, data),
+                builder.border(AsciiTable.FANCY_ASCII).asString());
+        assertEquals(2, cache.getHits());
+        assertEquals(10, cache.getMisses());
+    }
+
+    @Test
+    public void numberColumnsWithDecimalAlignment() {
+        String actual = AsciiTable.getTable(planets, Arrays.asList(
+                new Column().header("Name").with(planet -> planet.name),
+                new Column().header("Diameter").withNumber(planet -> planet.diameter * 12_742, NumberFormatter.fixed(1).thousandsSeparator(',')),
+                new Column().header("Mass").dataAlign(DECIMAL).with(planet -> Double.toString(planet.mass)),
+                new Column().header("Size").dataAlign(DECIMAL).withNumber(planet -> planet.num == 4 ? null : (long) Math.pow(1000, planet.num), NumberFormatter.bytes(1))));
+
+        String expected = String.join(System.lineSeparator(),
+                "+---------+----------+------+------------+",
+                "| Name    | Diameter | Mass | Size       |",
+                "+---------+----------+------+------------+",
+                "| Mercury |  4,867.4 | 0.06 | 1000.0 B   |",
+                "+---------+----------+------+------------+",
+                "|   Venus | 12,092.2 | 0.82 |  976.6 KiB |",
+                "+---------+----------+------+------------+",
+                "|   Earth | 12,742.0 | 1.0  |  953.7 MiB |",
+                "+---------+----------+------+------------+",
+                "|    Mars |  6,778.7 | 0.11 |            |",
+                "+---------+----------+------+------------+");
+        assertEquals(expected, actual);
+
+        String[][] data = {{"1"}, {"22.5"}, {"-3.125"}, {"N/A"}, {"12 ms"}, {"Two\nlines"}};
+        assertEquals(String.join(System.lineSeparator(),
+                "+---------+",
+                "|   1     |",
+                "|  22.5   |",
+                "|  -3.125 |",
+                "| N/A     |",
+                "|  12 ms  |",
+                "|     Two |",
+                "|   lines |",
+                "+---------+"), AsciiTable.builder().data(new Column[]{new Column().dataAlign(DECIMAL)}, data).border(AsciiTable.BASIC_ASCII_NO_DATA_SEPARATORS).asString());
+        assertEquals("22.5", data[1][0]);
+    }
+
+    @Test
+    public void timestampColumns() {
+        List<Instant> instants = Arrays.asList(Instant.ofEpochSecond(1621152246, 5_000_000), Instant.ofEpochSecond(1621152246, 999_000_000), null);
+        String actual = AsciiTable.getTable(instants, Arrays.asList(
+                new Column().header("Instant").withInstant(instant -> instant, TimestampFormatter.ofPattern("HH:mm:ss").withFractionDigits(3)),
+                new Column().header("Millis").withEpochMillis(instant -> instant == null ? 0 : instant.toEpochMilli(), TimestampFormatter.ofPattern("yyyy-MM-dd")),
+                new Column().header("Local").withLocalDateTime(instant -> instant == null ? null : LocalDateTime.ofInstant(instant, ZoneOffset.UTC),
+                        TimestampFormatter.ofPattern("dd.MM HH:mm"))));
+
+        String expected = String.join(System.lineSeparator(),
+                "+--------------+------------+-------------+",
+                "| Instant      | Millis     | Local       |",
+                "+--------------+------------+-------------+",
+                "| 08:04:06.005 | 2021-05-16 | 16.05 08:04 |",
+                "+--------------+------------+-------------+",
+                "| 08:04:06.999 | 2021-05-16 | 16.05 08:04 |",
+                "+--------------+------------+-------------+",
+                "|              | 1970-01-01 |             |",
+                "+--------------+------------+-------------+");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void resumableRenderer() {
+        TableSpec spec = AsciiTable.builder()
+                .header("Name", "Emoji")
+                .footer("Total", "🌍 ✓")
+                .spec();
+        Object[][] data = {{"Mercury", "☿"}, {"Venus", "♀"}, {"Earth", "🌍"}};
+        byte[] expected = spec.asString(data).getBytes(StandardCharsets.UTF_8);
+
+        // The largest character, the emoji, is 4 bytes in UTF-8
+        for (int size = 4; size <= expected.length + 1; size++) {
+            ResumableRenderer renderer = spec.renderer(data, StandardCharsets.UTF_8);
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            boolean done;
+            do {
+                done = renderer.render(buffer);
+                buffer.flip();
+                baos.write(buffer.array(), 0, buffer.limit());
+                buffer.clear();
+            } while (!done);
+
+            assertTrue(renderer.isDone());
+            assertArrayEquals(expected, baos.toByteArray(), "Buffer size " + size);
+        }
+    }
+
+    @Test
+    public void laidOutTable() {
+        List<Character[]> borders = Arrays.asList(AsciiTable.BASIC_ASCII, AsciiTable.FANCY_ASCII, AsciiTable.NO_BORDERS,
+                AsciiTable.BASIC_ASCII_NO_DATA_SEPARATORS_NO_OUTSIDE_BORDER, AsciiTable.RE_STRUCTURED_TEXT);
+        List<ColumnData<Planet>> columns = Arrays.<ColumnData<Planet>>asList(
+                new Column().header("Name").footer("Average").with(planet -> planet.name),
+                new Column().header("Diameter").dataAlign(DECIMAL).with(planet -> Double.toString(planet.diameter)),
+                new Column().header("Atmosphere Composition").maxWidth(20, OverflowBehaviour.ELLIPSIS_RIGHT).with(planet -> planet.atmosphere),
+                new Column().header("Paragraph").with(planet -> paragraphs.values().toArray(new String[0])[planet.num % 3]));
+
+        for (Integer maxTableWidth : Arrays.asList(null, 60)) {
+            AsciiTableBuilder builder = AsciiTable.builder().data(planets, columns);
+            if (maxTableWidth != null) builder.maxTableWidth(maxTableWidth);
+            LaidOutTable table = builder.layout();
+
+            assertEquals(builder.asString(), table.asString());
+            for (Character[] border : borders)
+                assertEquals(builder.border(border).asString(), table.asString(border), "Max width " + maxTableWidth);
+        }
+    }
+
+    @Test
+    public void laidOutTableLines() {
+        LaidOutTable table = AsciiTable.builder()
+                .data(planets, Arrays.<ColumnData<Planet>>asList(
+                        new Column().header("Name").footer("Multiline\nfooter").with(planet -> planet.name),
+                        new Column().header("Atmosphere").maxWidth(14).with(planet -> planet.atmosphere)))
+                .layout();
+        // Tables without rows, with and without a header and a footer
+        List<LaidOutTable> tables = new ArrayList<>(Collections.singletonList(table));
+        for (String header : Arrays.asList("Name", null)) {
+            for (String footer : Arrays.asList("Total", null))
+                tables.add(AsciiTable.builder().data(new Column[]{new Column().header(header).footer(footer), new Column()}, new Object[0][]).layout());
+        }
+
+        for (LaidOutTable laidOut : tables) {
+            for (Character[] border : Arrays.asList(AsciiTable.BASIC_ASCII, AsciiTable.FANCY_ASCII, AsciiTable.NO_BORDERS,
+                    AsciiTable.BASIC_ASCII_NO_DATA_SEPARATORS_NO_OUTSIDE_BORDER, AsciiTable.RE_STRUCTURED_TEXT)) {
+                List<String> expected = Arrays.asList(laidOut.asString(border).split(System.lineSeparator(), -1));
+                assertEquals(expected.size(), laidOut.numLines(border));
+                for (int from = 0; from <= expected.size(); from++) {
+                    for (int to = from; to <= expected.size(); to++)
+                        assertEquals(String.join(System.lineSeparator(), expected.subList(from, to)), laidOut.lines(border, from, to), from + " to " + to);
+                }
+            }
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> table.lines(0, table.numLines() + 1));
+    }
+
+    @Test
+    public void columnWindows() {
+        Object unrenderable = new Object() {
+            @Override public String toString() { throw new AssertionError("Column outside of the window was rendered"); }
+        };
+        Object[][] data = {{1, "Mercury", "hidden", 0.382, 0.06, unrenderable}, {2, "Venus", "hidden", 0.949, 0.82, unrenderable},
+                {3, "Earth", "hidden", 1.0, 1.0, unrenderable}};
+        Column[] columns = {new Column().header("Id"), new Column().header("Name"), new Column().visible(false),
+                new Column().header("Diameter").dataAlign(DECIMAL), new Column().header("Mass"), new Column().header("Unrenderable")};
+        ColumnWindowTable table = AsciiTable.builder().data(columns, new Object[0][]).spec().columnWindows(data);
+        // The windows use the columns as they were when the spec was created
+        columns[1].header("A much longer header").maxWidth(4, OverflowBehaviour.CLIP_RIGHT);
+
+        assertEquals(5, table.getNumColumns());
+        assertEquals(String.join(System.lineSeparator(),
+                "+----+----------+------+",
+                "| Id | Diameter | Mass |",
+                "+----+----------+------+",
+                "|  1 |    0.382 | 0.06 |",
+                "+----+----------+------+",
+                "|  2 |    0.949 | 0.82 |",
+                "+----+----------+------+",
+                "|  3 |    1.0   |  1.0 |",
+                "+----+----------+------+"), table.window(1, 2, 4));
+        assertEquals(String.join(System.lineSeparator(),
+                "+----+---------+----------+",
+                "| Id | Name    | Diameter |",
+                "+----+---------+----------+",
+                "|  1 | Mercury |    0.382 |",
+                "+----+---------+----------+",
+                "|  2 |   Venus |    0.949 |",
+                "+----+---------+----------+",
+                "|  3 |   Earth |    1.0   |",
+                "+----+---------+----------+"), table.window(1, 1, 3));
+        assertEquals(9, table.getColumnWidth(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.window(2, 1, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.window(0, 4, 6));
+    }
+
+    @Test
+    public void renderContextIsReusedAndShrunk() {
+        String small = AsciiTable.getTable(new Object[][]{{"a", "b"}});
+        String[][] hugeData = new String[100][];
+        Arrays.fill(hugeData, new String[]{String.join("", Collections.nCopies(RenderContext.MAX_RETAINED_CHARS / 50, "x"))});
+        String huge = AsciiTable.getTable(hugeData);
+        assertTrue(huge.length() > RenderContext.MAX_RETAINED_CHARS);
+
+        RenderContext context = RenderContext.acquire();
+        context.release();
+        assertTrue(context.capacity() <= RenderContext.MAX_RETAINED_CHARS, "Capacity " + context.capacity());
+        assertEquals(small, AsciiTable.getTable(new Object[][]{{"a", "b"}}));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        AsciiTable.builder().data(hugeData).writeTo(baos);
+        assertEquals(huge, baos.toString());
+        assertTrue(context == RenderContext.acquire());
+        context.release();
+    }
+
+    @Test
+    public void charSequenceCells() {
+        String[][] strings = paragraphs.values().stream().map(paragraph -> new String[]{paragraph.substring(0, 10), paragraph}).toArray(String[][]::new);
+        Object[][] sequences = Arrays.stream(strings)
+                .map(row -> new Object[]{new StringBuilder(row[0]), new NoCopySequence(row[1], 0, row[1].length())}).toArray(Object[][]::new);
+        Object[][] buffers = Arrays.stream(strings)
+                .map(row -> new Object[]{CharBuffer.wrap(row[0]), CharBuffer.wrap(row[1].toCharArray())}).toArray(Object[][]::new);
+
+        for (OverflowBehaviour overflow : OverflowBehaviour.values()) {
+            Column[] columns = {new Column().header("Title"), new Column().header("Paragraph").maxWidth(30, overflow)};
+            String expected = AsciiTable.getTable(columns, strings);
+            assertEquals(expected, AsciiTable.getTable(columns, sequences), overflow.toString());
+            assertEquals(expected, AsciiTable.getTable(columns, buffers), overflow.toString());
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            AsciiTable.builder().data(columns, sequences).writeTo(baos);
+            assertEquals(expected, baos.toString());
+
+            assertEquals(expected, AsciiTable.getTable(Arrays.asList(strings), Arrays.<ColumnData<String[]>>asList(
+                    new Column().header("Title").withText(row -> new StringBuilder(row[0])),
+                    new Column().header("Paragraph").maxWidth(30, overflow).withText(row -> new NoCopySequence(row[1], 0, row[1].length())))));
+        }
+    }
+
+    @Test
+    public void truncatingLargeCells() {
+        String start = "The start of a line", end = "and the end of it";
+        String large = start + String.join("", Collections.nCopies(1 << 20, "x")) + end + "\r\nSecond line\n" + start + end;
+        String small = start + String.join("", Collections.nCopies(50, "x")) + end + "\r\nSecond line\n" + start + end;
+
+        for (OverflowBehaviour overflow : OverflowBehaviour.values()) {
+            if (overflow == OverflowBehaviour.NEWLINE) continue;
+            Column[] columns = {new Column().header("Id"), new Column().header("Payload").maxWidth(30, overflow)};
+            assertEquals(AsciiTable.getTable(columns, new Object[][]{{1, small}}), AsciiTable.getTable(columns, new Object[][]{{1, large}}), overflow.toString());
+            assertEquals(AsciiTable.getTable(columns, new Object[][]{{1, small}}),
+                    AsciiTable.getTable(columns, new Object[][]{{1, new NoCopySequence(large, 0, large.length())}}), overflow.toString());
+        }
+    }
+
+    @Test
+    public void packedTable() {
+        Column[] columns = {new Column().header("Id"), new Column().visible(false), new Column().header("Name").dataAlign(LEFT),
+                new Column().header("Mass").dataAlign(DECIMAL), new Column().header("Notes").maxWidth(20, OverflowBehaviour.ELLIPSIS_RIGHT)};
+        Object[][] data = {
+                {1, "hidden", "Mercury", 0.06, "Smallest planet,\nclosest to the Sun"},
+                {2, "hidden", "Venus", 0.815, null},
+                {3, "hidden", "Earth ☺", 1, "Home, with a name that is not Latin-1", "Extra column"},
+                {},
+                {4, "hidden", null, "12.5"}};
+        TableSpec spec = AsciiTable.builder().data(columns, new Object[0][]).spec();
+
+        for (PackedTable table : Arrays.asList(spec.packed(), spec.packedOffHeap())) {
+            assertEquals(spec.asString(new Object[0][]), table.asString());
+            for (Object[] row : data) table.addRow(row);
+            assertEquals(data.length, table.size());
+            assertEquals(spec.asString(data), table.asString());
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            table.writeTo(baos);
+            assertEquals(spec.asString(data), baos.toString());
+        }
+
+        PackedTable table = spec.packed();
+        for (int i = 0; i < 1000; i++) table.addRow(i, null, "Row " + i, i / 8.0, String.join("", Collections.nCopies(i % 50, "x")));
+        assertEquals(1000, table.size());
+        assertTrue(table.getPackedBytes() > 0);
+        assertEquals(spec.asString(IntStream.range(0, 1000)
+                .mapToObj(i -> new Object[]{i, null, "Row " + i, i / 8.0, String.join("", Collections.nCopies(i % 50, "x"))})
+                .toArray(Object[][]::new)), table.asString());
+    }
+
+    @Test
+    public void tableSink() throws InterruptedException {
+        Column[] columns = {new Column().header("Id"), new Column().visible(false), new Column().header("Text").dataAlign(LEFT)};
+        TableSpec spec = AsciiTable.builder().data(columns, new Object[0][]).spec();
+        Object[][] data = IntStream.range(0, 4000)
+                .mapToObj(i -> new Object[]{i, "hidden", String.join("", Collections.nCopies(i % 13, "ab")) + (i % 7 == 0 ? "\nline" : "")})
+                .toArray(Object[][]::new);
+
+        TableSink sink = spec.sink();
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        TableSink streamingSink = spec.sink(streamed);
+        int numThreads = 8;
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int first = t;
+            threads.add(new Thread(() -> {
+                for (int i = first; i < data.length; i += numThreads) {
+                    sink.addSequenced(i, data[i]);
+                    streamingSink.addSequenced(i, data[i]);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) thread.join();
+        streamingSink.close();
+
+        assertEquals(spec.asString(data), sink.asString());
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (StreamingTable table = spec.stream(expected)) {
+            for (Object[] row : data) table.appendRow(row);
+        }
+        assertEquals(expected.toString(), streamed.toString());
+        assertThrows(IllegalStateException.class, () -> sink.add(1, "a", "b"));
+        assertThrows(IllegalStateException.class, streamingSink::asString);
+
+        TableSink arrivalSink = spec.sink();
+        for (Object[] row : data) arrivalSink.add(row);
+        assertEquals(spec.asString(data), arrivalSink.asString());
+
+        // Rendering while a producer is still adding rows leaves out some of them, but does not lose them
+        Object[][] many = IntStream.range(0, 200_000).mapToObj(i -> new Object[]{i}).toArray(Object[][]::new);
+        TableSink busySink = spec.sink();
+        Thread producer = new Thread(() -> {
+            for (int i = many.length - 1; i >= 0; i--) busySink.addSequenced(i, many[i]);
+        });
+        producer.start();
+        while (producer.isAlive()) busySink.asString();
+        producer.join();
+        assertEquals(spec.asString(many), busySink.asString());
+
+        ByteArrayOutputStream gap = new ByteArrayOutputStream();
+        TableSink gapSink = AsciiTable.builder().border(AsciiTable.NO_BORDERS)
+                .data(new Column[]{new Column().minWidth(3)}, new Object[0][]).spec().sink(gap);
+        gapSink.addSequenced(2, "c");
+        gapSink.addSequenced(0, "a");
+        assertEquals(" a ", gap.toString());
+        gapSink.close();
+        assertEquals(" a " + System.lineSeparator() + " c ", gap.toString());
+    }
+
+    @Test
+    public void delimitedFile(@TempDir Path dir) throws IOException {
+        Path csv = dir.resolve("table.csv");
+        Files.write(csv, ("Name,Price,Comment\r\n" +
+                "apple,1.5,\"red, or green\"\r\n" +
+                "\"banana\",12.25,\"says \"\"hi\"\"\"\n" +
+                "crème brûlée,3,\"two\nlines\"\n" +
+                ",,\n" +
+                "kiwi,0.125").getBytes(StandardCharsets.UTF_8));
+        Object[][] data = {
+                {"apple", "1.5", "red, or green"},
+                {"banana", "12.25", "says \"hi\""},
+                {"crème brûlée", "3", "two\nlines"},
+                {"", "", ""},
+                {"kiwi", "0.125"}};
+
+        Column[] columns = {new Column(), new Column().dataAlign(DECIMAL), new Column().header("Note").maxWidth(10)};
+        Column[] expectedColumns = {new Column().header("Name"), new Column().header("Price").dataAlign(DECIMAL), new Column().header("Note").maxWidth(10)};
+        String expected = AsciiTable.builder().data(expectedColumns, data).asString();
+        for (int bufferBytes : new int[]{1 << 20, 16, 1})
+            assertEquals(expected, AsciiTable.builder().data(columns, DelimitedFile.csv(csv).bufferBytes(bufferBytes)).asString());
+
+        Path tsv = dir.resolve("table.tsv");
+        Files.write(tsv, "1\t\"quoted\"\n2\n3\ta\tb\n".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        AsciiTable.builder().data(new Column[]{new Column(), new Column().visible(false)}, DelimitedFile.tsv(tsv).header(false)).writeTo(written);
+        assertEquals(AsciiTable.getTable(new Column[]{new Column(), new Column().visible(false)}, new Object[][]{{1, "\"quoted\""}, {2}, {3, "a", "b"}}),
+                written.toString("UTF-8"));
+
+        assertThrows(IllegalArgumentException.class, () -> AsciiTable.builder().data(DelimitedFile.csv(csv)).layout());
+        assertThrows(IllegalArgumentException.class, () -> DelimitedFile.csv(csv).delimiter('"'));
+    }
+
+    @Test
+    public void resultSetData() {
+        String[] labels = {"Id", "Name", "Price"};
+        int[] types = {Types.INTEGER, Types.VARCHAR, Types.DECIMAL};
+        Object[][] rows = {{"1", "apple", "1.50"}, {"2", null, "12.25"}, {"3", "crème brûlée", "3.00"}, {"4", "kiwi\nfruit", "0.10"}};
+        Column[] columns = {new Column().header("Id").headerAlign(RIGHT).dataAlign(RIGHT), new Column().header("Name"), new Column().header("Price").headerAlign(RIGHT).dataAlign(RIGHT)};
+        TableSpec spec = AsciiTable.builder().data(columns, new Object[0][]).spec();
+        String expected = spec.asString(rows);
+
+        List<String> calls = new ArrayList<>();
+        assertEquals(expected, AsciiTable.builder().data(ResultSetData.of(resultSet(labels, types, rows, calls))).asString());
+        assertEquals(expected, AsciiTable.builder().data(ResultSetData.of(resultSet(labels, types, rows, calls)).widthsFromAllRows().fetchSize(500)).asString());
+        assertEquals(Arrays.asList("fetchSize 500"), calls);
+
+        // Only the sample sizes the columns, the rows after it overflow, as in a streaming table
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        try (StreamingTable table = spec.stream(streamed, Arrays.copyOf(rows, 2))) {
+            for (Object[] row : rows) table.appendRow(row);
+        }
+        assertEquals(streamed.toString(), AsciiTable.builder().data(ResultSetData.of(resultSet(labels, types, rows, calls)).widthsFromSample(2)).asString());
+        assertEquals(streamed.toString(), new String(render(AsciiTable.builder().data(ResultSetData.of(resultSet(labels, types, rows, calls)).widthsFromSample(2))
+                .renderer(StandardCharsets.UTF_8), 7), StandardCharsets.UTF_8));
+
+        String displaySized = AsciiTable.builder().data(new Column[]{new Column().visible(false)}, ResultSetData.of(resultSet(labels, types, rows, calls)).widthsFromDisplaySize()).asString();
+        assertEquals("+--------------+-----------------+", displaySized.split(System.lineSeparator())[0]);
+        assertEquals(spec.asString(new Object[0][]), AsciiTable.builder().data(ResultSetData.of(resultSet(labels, types, new Object[0][], calls))).asString());
+    }
+
+    /** Renders the table with a renderer through a buffer of the given size */
+    private static byte[] render(ResumableRenderer renderer, int bufferSize) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        boolean done;
+        do {
+            done = renderer.render(buffer);
+            baos.write(buffer.array(), 0, buffer.position());
+            buffer.clear();
+        } while (!done);
+        return baos.toByteArray();
+    }
+
+    /** Returns a forward-only result set of the given rows, whose columns have a display size of 3 chars per label char */
+    private static ResultSet resultSet(String[] labels, int[] types, Object[][] rows, List<String> calls) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(), new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount": return labels.length;
+                        case "getColumnLabel": return labels[(int) args[0] - 1];
+                        case "getColumnType": return types[(int) args[0] - 1];
+                        case "getColumnDisplaySize": return 3 * labels[(int) args[0] - 1].length();
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        int[] row = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMetaData": return metaData;
+                        case "next": return ++row[0] < rows.length;
+                        case "getString": return rows[row[0]][(int) args[0] - 1];
+                        case "setFetchSize":
+                            calls.add("fetchSize " + args[0]);
+                            return null;
+                        default: throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void renderBudgets() {
+        Object[][] data = IntStream.range(0, 100).mapToObj(i -> new Object[]{i, i % 10 == 3 ? "three\nlines\nhigh" : "ø"}).toArray(Object[][]::new);
+        Column[] columns = {new Column().header("Id"), new Column().header("Text").minWidth(60)};
+        String[] full = AsciiTable.builder().data(columns, data).asString().split(System.lineSeparator());
+        String bottom = full[full.length - 1];
+
+        BiConsumer<AsciiTableBuilder, String> assertTruncated = (builder, marker) -> {
+            List<Truncation> truncations = new ArrayList<>();
+            String table = builder.data(columns, data).onTruncation(truncations::add).asString();
+            assertEquals(1, truncations.size());
+            Truncation truncation = truncations.get(0);
+            assertEquals(100, truncation.getRowsWritten() + truncation.getRowsDropped());
+
+            // The rows that were written, each followed by its separator line, then the marker and the bottom border
+            int numLines = 3;
+            for (int row = 0; row < truncation.getRowsWritten(); row++) numLines += row % 10 == 3 ? 4 : 2;
+            List<String> expected = new ArrayList<>(Arrays.asList(full).subList(0, numLines));
+            expected.add(String.format("| %-" + (bottom.length() - 4) + "s |", marker.replace("N", Integer.toString(truncation.getRowsDropped()))));
+            expected.add(bottom);
+            assertEquals(String.join(System.lineSeparator(), expected), table);
+            assertEquals(table, new String(render(builder.renderer(StandardCharsets.UTF_8), 16), StandardCharsets.UTF_8));
+        };
+
+        assertTruncated.accept(AsciiTable.builder().maxOutputChars(500), "… N more rows, output limit of 500 chars reached");
+        assertTruncated.accept(AsciiTable.builder().maxOutputBytes(500), "… N more rows, output limit of 500 bytes reached");
+        assertTruncated.accept(AsciiTable.builder().maxOutputLines(20), "… N more rows, output limit of 20 lines reached");
+        assertTruncated.accept(AsciiTable.builder().maxRenderTime(Duration.ZERO), "… N more rows, render time limit of 0 ms reached");
+
+        // The output limits are hard: 19 lines fit, but the next row and its separator line would make it 21
+        String table = AsciiTable.builder().data(columns, data).maxOutputLines(20).asString();
+        assertEquals(19, table.split(System.lineSeparator()).length - 2);
+        assertTrue(AsciiTable.builder().data(columns, data).maxOutputChars(500).asString().lastIndexOf(System.lineSeparator() + "| …") <= 500);
+
+        // In a narrow table, the marker wraps within the width of the table
+        String[] narrow = AsciiTable.builder().header("Id", "Text").data(data).maxOutputLines(20).asString().split(System.lineSeparator());
+        assertEquals("| … 93 more  |", narrow[19]);
+        assertTrue(Arrays.stream(narrow).allMatch(line -> line.length() == narrow[0].length()));
+
+        Thread.currentThread().interrupt();
+        try {
+            assertTruncated.accept(AsciiTable.builder().maxOutputLines(1000), "… N more rows, rendering interrupted");
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        assertEquals(String.join(System.lineSeparator(), full), AsciiTable.builder().data(columns, data).maxOutputLines(1000).asString());
+        assertThrows(IllegalArgumentException.class, () -> AsciiTable.builder().maxOutputChars(0));
+    }
+
+    @Test
+    public void renderBudgetsWhileMeasuring(@TempDir Path dir) throws IOException, SQLException {
+        Path csv = dir.resolve("table.csv");
+        Files.write(csv, "Id,Name\n1,apple\n2,banana\n".getBytes(StandardCharsets.UTF_8));
+        String[] labels = {"Id", "Name"};
+        ResultSet resultSet = resultSet(labels, new int[]{Types.INTEGER, Types.VARCHAR}, new Object[][]{{"1", "apple"}, {"2", "banana"}}, new ArrayList<>());
+        String expected = String.join(System.lineSeparator(),
+                "+----+------+",
+                "| Id | Name |",
+                "+----+------+",
+                "| … more    |",
+                "| rows,     |",
+                "| rendering |",
+                "| interrupt |",
+                "| ed        |",
+                "+----+------+");
+
+        // The budget also stops measuring the columns, before any of the rows are read
+        List<Truncation> truncations = new ArrayList<>();
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(expected, AsciiTable.builder().data(DelimitedFile.csv(csv)).onTruncation(truncations::add).maxOutputLines(1000).asString());
+            assertEquals(expected, AsciiTable.builder().data(ResultSetData.of(resultSet).widthsFromAllRows()).onTruncation(truncations::add).maxOutputLines(1000).asString());
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        for (Truncation truncation : truncations) {
+            assertEquals(Truncation.Reason.INTERRUPTED, truncation.getReason());
+            assertEquals(0, truncation.getRowsWritten());
+            assertEquals(-1, truncation.getRowsDropped());
+        }
+        assertEquals(2, truncations.size());
+        assertTrue(resultSet.next());
+        assertEquals("1", resultSet.getString(1));
+    }
+
+    @Test
+    public void singleLineRows() {
+        // A styler that changes nothing, so that every row is written by splitting its cells into lines
+        Styler identity = new Styler() {};
+        Column[] columns = {new Column().header("Id").minWidth(6), new Column().header("Fits").maxWidth(7, OverflowBehaviour.ELLIPSIS_RIGHT),
+                new Column().header("Wraps").maxWidth(7), new Column().header("Amount").dataAlign(DECIMAL), new Column().header("Pad").minWidth(9).dataAlign(CENTER)};
+        Object[][] data = {
+                {1, "exactly", "short", 1.5, "x"},
+                {2, "too long", "wrapping text", 10.25, null},
+                {3, new StringBuilder("a\rb"), "", 3},
+                {4, null, new StringBuilder("two\nlines"), "n/a", "y"},
+                {}};
+
+        for (Character[] border : Arrays.asList(AsciiTable.BASIC_ASCII, AsciiTable.NO_BORDERS, AsciiTable.FANCY_ASCII))
+            assertEquals(AsciiTable.builder().border(border).styler(identity).data(columns, data).asString(),
+                    AsciiTable.builder().border(border).data(columns, data).asString());
+    }
+
+    /** A char sequence that fails if it is copied as a whole with {@link #toString()} */
+    private static class NoCopySequence implements CharSequence {
+        private final String text;
+        private final int start;
+        private final int end;
+
+        private NoCopySequence(String text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override public int length() { return end - start; }
+        @Override public char charAt(int index) { return text.charAt(start + index); }
+        @Override public CharSequence subSequence(int start, int end) { return new NoCopySequence(text, this.start + start, this.start + end); }
+        @Override public String toString() { throw new AssertionError("Char sequence should not be copied"); }
+    }
+
+    @Test
+    public void streamingTable() {
+        TableSpec spec = AsciiTable.builder().header("Name", "Mass").footer("Total", "1.99").spec();
+        Object[][] data = {{"Mercury", 0.06}, {"Venus", 0.82}, {"Earth", 1.0}, {"Mars", 0.11}};
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        String previous = "";
+        try (StreamingTable table = spec.stream(baos, data)) {
+            for (Object[] row : data) {
+                table.appendRow(row);
+                String current = baos.toString();
+                assertTrue(current.startsWith(previous) && current.endsWith(row[1] + " |"), current);
+                previous = current;
+            }
+        }
+        assertEquals(spec.asString(data), baos.toString());
+
+        baos.reset();
+        try (StreamingTable table = AsciiTable.builder().border(AsciiTable.BASIC_ASCII_NO_DATA_SEPARATORS)
+                .data(new Column[]{new Column().header("Event").minWidth(9), new Column().header("Took").maxWidth(6)}, new Object[0][])
+                .spec().stream(baos).repeatHeaderEvery(2)) {
+            table.appendRow("start", 3);
+            table.appendRow("fetch", 1250);
+            table.appendRow("parse", "12 ms");
+        }
+        assertEquals(String.join(System.lineSeparator(),
+                "+---------+------+",
+                "| Event   | Took |",
+                "+---------+------+",
+                "|   start |    3 |",
+                "|   fetch | 1250 |",
+                "+---------+------+",
+                "| Event   | Took |",
+                "+---------+------+",
+                "|   parse |   12 |",
+                "|         |   ms |",
+                "+---------+------+"), baos.toString());
+    }
+
+    @Test
+    public void streamingTableWithoutSample() {
+        // The column without a header has no width to size it by, it must still have room for the appended rows
+        Map<OverflowBehaviour, String> expected = new LinkedHashMap<>();
+        expected.put(OverflowBehaviour.NEWLINE, String.join(System.lineSeparator(),
+                "+---+---+", "| N |   |", "+---+---+", "| h | x |", "| e | y |", "| l |   |", "| l |   |", "| o |   |", "+---+---+"));
+        expected.put(OverflowBehaviour.ELLIPSIS_RIGHT, String.join(System.lineSeparator(),
+                "+---+---+", "| N |   |", "+---+---+", "| … | x |", "|   | y |", "+---+---+"));
+        expected.forEach((overflow, table) -> {
+            TableSpec spec = AsciiTable.builder().border(AsciiTable.BASIC_ASCII_NO_DATA_SEPARATORS)
+                    .data(new Column[]{new Column().header("N").maxWidth(3, overflow), new Column()}, new Object[0][]).spec();
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            ByteArrayOutputStream sunk = new ByteArrayOutputStream();
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                try (StreamingTable streaming = spec.stream(streamed)) {
+                    streaming.appendRow("hello", "xy");
+                }
+                try (TableSink sink = spec.sink(sunk)) {
+                    sink.add("hello", "xy");
+                }
+            });
+            assertEquals(table, new String(streamed.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals(table, new String(sunk.toByteArray(), StandardCharsets.UTF_8));
+        });
+        assertThrows(IllegalArgumentException.class, () -> LineUtils.splitTextIntoLinesOfMaxLength("hello", 0));
+    }
+
+    @Test
+    public void tableModel() {
+        TableSpec spec = AsciiTable.builder()
+                .data(new Column[]{new Column().header("Id"), new Column().visible(false), new Column().header("Name").maxWidth(12)}, new Object[0][])
+                .spec();
+        TableModel model = spec.model();
+        List<Object[]> rows = new ArrayList<>();
+        assertEquals(spec.asString(new Object[0][]), model.asString());
+
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            int op = rows.isEmpty() ? 0 : random.nextInt(3);
+            if (op == 0) {
+                Object[] row = new Object[random.nextInt(5)];
+                for (int j = 0; j < row.length; j++)
+                    row[j] = random.nextInt(4) == 0 ? null : "x" + String.join("", Collections.nCopies(random.nextInt(20), "y"));
+                int index = random.nextInt(rows.size() + 1);
+                rows.add(index, row);
+                model.addRow(index, row);
+            } else if (op == 1) {
+                int index = random.nextInt(rows.size());
+                rows.remove(index);
+                model.removeRow(index);
+            } else {
+                int index = random.nextInt(rows.size());
+                int column = random.nextInt(5);
+                Object[] row = rows.get(index);
+                if (column >= row.length) rows.set(index, row = Arrays.copyOf(row, column + 1));
+                row[column] = random.nextInt(10);
+                model.setCell(index, column, row[column]);
+            }
+
+            assertEquals(rows.size(), model.size());
+            assertEquals(spec.asString(rows.toArray(new Object[0][])), model.asString(), "After operation " + i);
+        }
+    }
+
     @Test
     public void tableDefaultReStructuredText(){
         String expected = String.join("\n",
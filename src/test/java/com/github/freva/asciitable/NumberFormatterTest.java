@@ -0,0 +1,89 @@
+package com.github.freva.asciitable;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class NumberFormatterTest {
+
+    @Test
+    public void fixedMatchesStringFormat() {
+        Random random = new Random(42);
+        double[] special = {0, -0.0, 0.5, -0.5, 1.005, 0.125, 0.285, 2.675, -2.5, 999.9999, 1e-9, -1e-9, 123456789.987654321,
+                1e14, 1e20, -1e20, Double.MAX_VALUE, Double.MIN_VALUE, Long.MAX_VALUE};
+        for (int decimals = 0; decimals <= 6; decimals++) {
+            NumberFormatter formatter = NumberFormatter.fixed(decimals);
+            String pattern = "%." + decimals + "f";
+            for (double value : special)
+                assertFixed(String.format(Locale.US, pattern, value), formatter.format(value), value);
+            for (int i = 0; i < 10_000; i++) {
+                double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(16) - 4);
+                assertFixed(String.format(Locale.US, pattern, value), formatter.format(value), value);
+                double rounded = Math.round(value * 1000) / 1000d; // Many ties
+                assertFixed(String.format(Locale.US, pattern, rounded), formatter.format(rounded), rounded);
+                long integer = random.nextLong() >> random.nextInt(64);
+                assertEquals(String.format(Locale.US, pattern, new BigDecimal(integer)), formatter.format(integer));
+            }
+        }
+    }
+
+    @Test
+    public void thousandsSeparator() {
+        NumberFormatter formatter = NumberFormatter.fixed(2).thousandsSeparator(',');
+        assertEquals("0.00", formatter.format(0));
+        assertEquals("999.00", formatter.format(999));
+        assertEquals("1,000.00", formatter.format(1000));
+        assertEquals("-123,456.79", formatter.format(-123456.789));
+        assertEquals("9,223,372,036,854,775,807.00", formatter.format(Long.MAX_VALUE));
+        assertEquals("-9,223,372,036,854,775,808.00", formatter.format(Long.MIN_VALUE));
+        assertEquals("1,000,000,000,000,000,000,000,000.00", formatter.format(1e24));
+        assertEquals("1 234 567", NumberFormatter.fixed(0).thousandsSeparator(' ').format(1234567));
+    }
+
+    @Test
+    public void suffixes() {
+        NumberFormatter si = NumberFormatter.si(1);
+        assertEquals("0.0", si.format(0));
+        assertEquals("999.0", si.format(999));
+        assertEquals("1.0k", si.format(1000));
+        assertEquals("1.2M", si.format(1234567));
+        assertEquals("-1.2M", si.format(-1234567.0));
+        assertEquals("1.0M", si.format(999_960));
+        assertEquals("999.9k", si.format(999_940));
+        assertEquals("9.2E", si.format(Long.MAX_VALUE));
+        assertEquals("1000000.0E", si.format(1e24));
+        assertEquals("1.5", si.format(1.5));
+
+        NumberFormatter bytes = NumberFormatter.bytes(1);
+        assertEquals("512.0 B", bytes.format(512));
+        assertEquals("1023.0 B", bytes.format(1023));
+        assertEquals("1.5 KiB", bytes.format(1536));
+        assertEquals("1.0 MiB", bytes.format(1024 * 1024 - 1));
+        assertEquals("2 GiB", NumberFormatter.bytes(0).format(2L << 30));
+        assertEquals("1,024 EiB", NumberFormatter.bytes(0).thousandsSeparator(',').format(Math.pow(2, 70)));
+    }
+
+    @Test
+    public void nonFinite() {
+        assertEquals("NaN", NumberFormatter.fixed(2).format(Double.NaN));
+        assertEquals("Infinity", NumberFormatter.si(2).format(Double.POSITIVE_INFINITY));
+        assertEquals("-Infinity", NumberFormatter.fixed(2).format(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void validatesDecimals() {
+        assertThrows(IllegalArgumentException.class, () -> NumberFormatter.fixed(-1));
+        assertThrows(IllegalArgumentException.class, () -> NumberFormatter.si(16));
+    }
+
+    private static void assertFixed(String expected, String actual, double value) {
+        // String.format keeps the sign of negative numbers that round to zero
+        if (expected.matches("-0(\\.0*)?")) expected = expected.substring(1);
+        assertEquals(expected, actual, "Formatting " + value);
+    }
+}
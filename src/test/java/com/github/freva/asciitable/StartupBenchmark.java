@@ -0,0 +1,76 @@
+package com.github.freva.asciitable;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the time until the first table is printed by a fresh JVM, which is what short-lived CLI tools pay for.
+ * Each run starts a new JVM with only the library and {@link FirstTable} on the class path, and reports both the
+ * time of the first {@link AsciiTable#getTable} call and the time from JVM start until the table is printed. Part of
+ * the stress profile, run with {@code mvn test -Pstress -Dtest=StartupBenchmark}.
+ */
+@Tag("stress")
+public class StartupBenchmark {
+    private static final int RUNS = Integer.getInteger("stress.startupRuns", 10);
+
+    @Test
+    public void timeToFirstTable() throws Exception {
+        String classPath = Paths.get(AsciiTable.class.getProtectionDomain().getCodeSource().getLocation().toURI()) + File.pathSeparator +
+                Paths.get(FirstTable.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        List<Long> firstCallMicros = new ArrayList<>();
+        List<Long> sinceStartMillis = new ArrayList<>();
+        for (int i = 0; i < RUNS; i++) {
+            Process process = new ProcessBuilder(java, "-cp", classPath, FirstTable.class.getName()).redirectErrorStream(true).start();
+            List<String> output = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                for (String line; (line = reader.readLine()) != null; ) output.add(line);
+            }
+            assertEquals(0, process.waitFor(), String.join("\n", output));
+
+            String[] timings = output.get(output.size() - 1).split(" ");
+            firstCallMicros.add(Long.parseLong(timings[0]));
+            sinceStartMillis.add(Long.parseLong(timings[1]));
+        }
+
+        Collections.sort(firstCallMicros);
+        Collections.sort(sinceStartMillis);
+        System.out.println(AsciiTable.getTable(new String[]{"Time to first table", "Min", "Median", "Max"}, new Object[][]{
+                {"First getTable() call", firstCallMicros.get(0) / 1000.0 + " ms", firstCallMicros.get(RUNS / 2) / 1000.0 + " ms", firstCallMicros.get(RUNS - 1) / 1000.0 + " ms"},
+                {"JVM start to printed table", sinceStartMillis.get(0) + " ms", sinceStartMillis.get(RUNS / 2) + " ms", sinceStartMillis.get(RUNS - 1) + " ms"}}));
+        assertTrue(firstCallMicros.get(0) > 0);
+    }
+
+    /** Prints a typical table, then the microseconds of the first call and the milliseconds since the JVM started */
+    public static class FirstTable {
+        public static void main(String[] args) throws IOException {
+            long start = System.nanoTime();
+            String table = AsciiTable.getTable(new String[]{"Id", "Name", "Status"}, new Object[][]{
+                    {1, "build", "done"}, {2, "test", "running"}, {3, "deploy", "pending"}});
+            long firstCallNanos = System.nanoTime() - start;
+            System.out.println(table);
+            System.out.flush();
+            long printedMillis = System.currentTimeMillis();
+
+            // Only loaded after the table is printed, since the management classes are expensive to load
+            long sinceStartMillis = printedMillis - ManagementFactory.getRuntimeMXBean().getStartTime();
+            System.out.println(String.join(" ", Arrays.asList(Long.toString(firstCallNanos / 1000), Long.toString(sinceStartMillis))));
+        }
+    }
+}
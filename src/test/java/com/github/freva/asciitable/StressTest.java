@@ -0,0 +1,162 @@
+package com.github.freva.asciitable;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renders tables from thousands to millions of rows, from a few to a thousand columns, and with multi-megabyte
+ * cells, and records the throughput, peak heap, garbage collections and output rate of each. Not run by default,
+ * run with {@code mvn test -Pstress}, the results are printed and written to {@code target/stress-report.txt}.
+ * <p>
+ * The sizes may be overridden with {@code -Dstress.rows=1000,10000}, {@code -Dstress.columns=5,50} and
+ * {@code -Dstress.cellBytes=1048576}. Combinations with more than {@code -Dstress.maxCells} cells, default 100M, are
+ * skipped. The heap size is set with {@code -Dstress.heap}, default 4g.
+ */
+@Tag("stress")
+public class StressTest {
+    private static final int DISTINCT_ROWS = 1000;
+    private static final List<Result> results = new ArrayList<>();
+
+    @Test
+    public void scaling() {
+        long maxCells = Long.getLong("stress.maxCells", 100_000_000L);
+        for (int numColumns : sizes("stress.columns", 5, 50, 1_000)) {
+            for (int numRows : sizes("stress.rows", 1_000, 10_000, 100_000, 1_000_000, 10_000_000)) {
+                if ((long) numRows * numColumns > maxCells) continue;
+
+                Object[][] data = data(numRows, numColumns);
+                measure(numRows + " x " + numColumns, numRows, () -> AsciiTable.builder().data(data));
+            }
+        }
+    }
+
+    @Test
+    public void largeCells() {
+        for (int cellBytes : sizes("stress.cellBytes", 1 << 20, 4 << 20)) {
+            char[] chars = new char[cellBytes];
+            for (int i = 0; i < chars.length; i++) chars[i] = (char) ('a' + i % 26);
+            Object[][] data = {{1, new String(chars)}, {2, new String(chars)}};
+            String size = (cellBytes >> 20) + " MiB cells";
+
+            measure(size, data.length, () -> AsciiTable.builder().data(data));
+            measure(size + ", wrapped", data.length, () -> AsciiTable.builder()
+                    .data(new Column[]{new Column(), new Column().maxWidth(120, OverflowBehaviour.NEWLINE)}, data));
+            measure(size + ", ellipsis", data.length, () -> AsciiTable.builder()
+                    .data(new Column[]{new Column(), new Column().maxWidth(120, OverflowBehaviour.ELLIPSIS_RIGHT)}, data));
+        }
+    }
+
+    @AfterAll
+    public static void report() throws IOException {
+        String report = AsciiTable.getTable(AsciiTable.BASIC_ASCII_NO_DATA_SEPARATORS, results, Arrays.asList(
+                new Column().header("Table").dataAlign(HorizontalAlign.LEFT).with(result -> result.name),
+                new Column().header("Rows/s").withNumber(result -> result.numRows / result.seconds, NumberFormatter.si(1)),
+                new Column().header("Output").withNumber(result -> result.outputBytes, NumberFormatter.bytes(1)),
+                new Column().header("Output/s").withNumber(result -> result.outputBytes / result.seconds, NumberFormatter.bytes(1)),
+                new Column().header("Peak heap").withNumber(result -> result.peakHeapBytes, NumberFormatter.bytes(1)),
+                new Column().header("GCs").with(result -> Long.toString(result.gcCount)),
+                new Column().header("GC time").with(result -> result.gcMillis + " ms")));
+        System.out.println(report);
+        Files.createDirectories(Paths.get("target"));
+        Files.write(Paths.get("target", "stress-report.txt"), report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void measure(String name, int numRows, java.util.function.Supplier<AsciiTableBuilder> table) {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP) continue;
+            pool.resetPeakUsage();
+            heapPools.add(pool);
+        }
+        long gcCount = -gcCount(), gcMillis = -gcMillis();
+
+        CountingOutputStream output = new CountingOutputStream();
+        long start = System.nanoTime();
+        table.get().writeTo(output);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long peakHeapBytes = 0;
+        for (MemoryPoolMXBean pool : heapPools) peakHeapBytes += pool.getPeakUsage().getUsed();
+        results.add(new Result(name, numRows, seconds, output.count, peakHeapBytes, gcCount + gcCount(), gcMillis + gcMillis()));
+    }
+
+    /** Returns a table where the rows repeat a limited number of distinct rows, so that the test data itself is small */
+    private static Object[][] data(int numRows, int numColumns) {
+        Object[][] distinct = new Object[Math.min(numRows, DISTINCT_ROWS)][numColumns];
+        for (int row = 0; row < distinct.length; row++) {
+            for (int col = 0; col < numColumns; col++) {
+                switch (col % 3) {
+                    case 0: distinct[row][col] = row * 31 + col; break;
+                    case 1: distinct[row][col] = String.format(Locale.US, "%.3f", row / 7.0 + col); break;
+                    default: distinct[row][col] = String.join(" ", Collections.nCopies(1 + (row + col) % 5, "text"));
+                }
+            }
+        }
+
+        Object[][] data = new Object[numRows][];
+        for (int row = 0; row < numRows; row++) data[row] = distinct[row % distinct.length];
+        return data;
+    }
+
+    private static int[] sizes(String property, int... defaults) {
+        String value = System.getProperty(property);
+        if (value == null || value.trim().isEmpty()) return defaults;
+        return Arrays.stream(value.split(",")).mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) millis += Math.max(0, gc.getCollectionTime());
+        return millis;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override public void write(int b) { count++; }
+        @Override public void write(byte[] b, int off, int len) { count += len; }
+    }
+
+    private static class Result {
+        private final String name;
+        private final int numRows;
+        private final double seconds;
+        private final long outputBytes;
+        private final long peakHeapBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private Result(String name, int numRows, double seconds, long outputBytes, long peakHeapBytes, long gcCount, long gcMillis) {
+            this.name = name;
+            this.numRows = numRows;
+            this.seconds = seconds;
+            this.outputBytes = outputBytes;
+            this.peakHeapBytes = peakHeapBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+    }
+}
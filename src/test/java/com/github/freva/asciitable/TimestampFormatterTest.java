@@ -0,0 +1,60 @@
+package com.github.freva.asciitable;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TimestampFormatterTest {
+
+    @Test
+    public void matchesDateTimeFormatter() {
+        ZoneId zone = ZoneId.of("Europe/Oslo");
+        TimestampFormatter formatter = TimestampFormatter.ofPattern("yyyy-MM-dd HH:mm:ss", zone).withFractionDigits(3);
+        DateTimeFormatter expected = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(zone);
+        DateTimeFormatter expectedLocal = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+        Random random = new Random(42);
+        long millis = 1621152246123L;
+        for (int i = 0; i < 10_000; i++) {
+            millis += random.nextInt(5) == 0 ? random.nextInt(100_000_000) - 50_000_000 : random.nextInt(300);
+            Instant instant = Instant.ofEpochMilli(millis).plusNanos(random.nextInt(1_000_000));
+            assertEquals(expected.format(instant), formatter.format(instant));
+            assertEquals(expected.format(Instant.ofEpochMilli(millis)), formatter.formatEpochMillis(millis));
+            LocalDateTime local = LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+            assertEquals(expectedLocal.format(local), formatter.format(local));
+        }
+    }
+
+    @Test
+    public void fractionDigits() {
+        Instant instant = Instant.parse("2021-05-16T08:04:06.123456789Z");
+        assertEquals("08:04:06", TimestampFormatter.ofPattern("HH:mm:ss").format(instant));
+        assertEquals("08:04:06.1", TimestampFormatter.ofPattern("HH:mm:ss").withFractionDigits(1).format(instant));
+        assertEquals("08:04:06.123456789", TimestampFormatter.ofPattern("HH:mm:ss").withFractionDigits(9).format(instant));
+        assertEquals("1969-12-31T23:59:59.999", TimestampFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withFractionDigits(3).formatEpochMillis(-1));
+
+        // The fraction is written after the seconds, before the fields that follow them
+        ZoneId oslo = ZoneId.of("Europe/Oslo");
+        Instant noon = Instant.parse("2024-01-01T12:00:00.123Z");
+        assertEquals("2024-01-01T13:00:00.123+01:00", TimestampFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX", oslo).withFractionDigits(3).format(noon));
+        assertEquals("13:00:00.12 Europe/Oslo 'ss'", TimestampFormatter.ofPattern("HH:mm:ss VV '''ss'''", oslo).withFractionDigits(2).format(noon));
+        assertEquals("2024-01-01 12:00:00.1 AD", TimestampFormatter.ofPattern("yyyy-MM-dd HH:mm:ss G").withFractionDigits(1)
+                .format(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_000_000)));
+        assertThrows(IllegalArgumentException.class, () -> TimestampFormatter.ofPattern("HH:mm 'ss'").withFractionDigits(3));
+    }
+
+    @Test
+    public void rejectsSubSecondPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> TimestampFormatter.ofPattern("HH:mm:ss.SSS"));
+        assertThrows(IllegalArgumentException.class, () -> TimestampFormatter.ofPattern("HH:mm:ss").withFractionDigits(10));
+        assertEquals("Seconds 06", TimestampFormatter.ofPattern("'Seconds' ss").format(Instant.ofEpochSecond(6)));
+    }
+}